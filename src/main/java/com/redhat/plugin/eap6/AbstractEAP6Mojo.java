@@ -17,26 +17,38 @@
  */
 package com.redhat.plugin.eap6;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
 
-import javax.xml.parsers.DocumentBuilderFactory;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -44,10 +56,10 @@ import org.apache.maven.project.MavenProject;
 import org.apache.maven.shared.artifact.filter.StrictPatternExcludesArtifactFilter;
 import org.sonatype.plexus.build.incremental.BuildContext;
 import org.w3c.dom.Document;
-import org.w3c.dom.ls.DOMImplementationLS;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
 import org.w3c.dom.ls.LSException;
 import org.w3c.dom.ls.LSOutput;
-import org.w3c.dom.ls.LSSerializer;
 
 /**
  * This abstract EAP6 Mojo initializes the module dictionaries and the skeleton file
@@ -60,6 +72,9 @@ public abstract class AbstractEAP6Mojo extends AbstractMojo {
     @Parameter(defaultValue = "${project}", readonly = true, required = true)
     protected MavenProject project;
 
+    @Parameter(defaultValue = "${session}", readonly = true)
+    protected MavenSession session;
+
     @Parameter(defaultValue = "true")
     protected Boolean generate = Boolean.TRUE;
 
@@ -129,13 +144,89 @@ public abstract class AbstractEAP6Mojo extends AbstractMojo {
     @Parameter(defaultValue = "false")
     protected Boolean addResourceFolder = Boolean.FALSE;
 
+    /**
+     * Modules directory of a local EAP installation; if given, module dependencies already exported by another module dependency are omitted
+     *
+     * @since 1.0.1
+     */
+    @Parameter(property = "eap6.modulesRoot")
+    protected File modulesRoot;
+
+    /**
+     * Analysis of the compiled classes for module dependencies no class refers to: <code>keep</code> (default, no analysis), <code>warn</code> or
+     * <code>remove</code>
+     *
+     * @since 1.0.1
+     */
+    @Parameter(property = "eap6.unusedModules", defaultValue = "keep")
+    protected String unusedModules = "keep";
+
+    /**
+     * Cache of the packages of dependency jars, kept between builds for the analysis of unusedModules
+     *
+     * @since 1.0.1
+     */
+    @Parameter(property = "eap6.packageCacheFile", defaultValue = "${user.home}/.m2/eap6-packages.idx")
+    protected File packageCacheFile;
+
+    /**
+     * Restrict each module dependency to the packages the compiled classes use from it, by path include filters
+     *
+     * @since 1.0.1
+     */
+    @Parameter(property = "eap6.generatePathFilters", defaultValue = "false")
+    protected boolean generatePathFilters;
+
+    /**
+     * Writes a Jandex annotation index META-INF/jandex.idx of the compiled classes, so the server does not scan them at deploy time
+     *
+     * @since 1.0.1
+     */
+    @Parameter(property = "eap6.generateJandexIndex", defaultValue = "false")
+    protected boolean generateJandexIndex;
+
+    /**
+     * Skips analysis and generation while the descriptor exists and all inputs are unchanged since it was written: the resolved dependencies,
+     * the dictionary and skeleton files, the plugin and the parameters. The module.xml files below modulesRoot are not part of the inputs.
+     *
+     * @since 1.0.1
+     */
+    @Parameter(property = "eap6.incremental", defaultValue = "false")
+    protected boolean incremental;
+
+    /**
+     * Merges the module dependencies into the skeleton with StAX while writing the descriptor, instead of building and serializing a DOM
+     *
+     * @since 1.0.1
+     */
+    @Parameter(property = "eap6.streamingXml", defaultValue = "false")
+    protected boolean streamingXml;
+
     // Injection of BuildContext for m2e-compatibility
     @Component
     protected BuildContext buildContext;
 
     protected Dictionaries dictionaries = new Dictionaries();
-    protected Map<Artifact, String> artifactsAsModules;
-    protected Map<String, Artifact> reverseMap = new HashMap<String, Artifact>();
+    protected ResolutionCache resolutionCache;
+    protected ArtifactClassification classification;
+    protected Map<Artifact, String> moduleDependencies;
+    protected Set<String> referencedPackages;
+    protected Map<String, Set<String>> modulePaths;
+    protected ArtifactIndex artifactIndex;
+    protected InputFingerprint inputFingerprint;
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        try {
+            doExecute();
+        } finally {
+            XmlSupport.release();
+        }
+    }
+
+    /**
+     * Runs the goal; the XML support objects of the thread are released afterwards
+     */
+    protected abstract void doExecute() throws MojoExecutionException, MojoFailureException;
 
     /**
      * Initialize mapping dictionaries
@@ -146,17 +237,22 @@ public abstract class AbstractEAP6Mojo extends AbstractMojo {
         // Read the dictionary files
         try {
             // Load the default dictionary
-            dictionaries.addDictionary(getClass().getResourceAsStream("/eap6.dict"));
-            // load configured dictionaries
+            dictionaries.addDictionary(DictionaryCache.getResource("/eap6.dict"));
+            // load configured dictionaries concurrently, added in declared order
+            final List<File> files = new ArrayList<File>();
             for (final File f : dictionaryFiles) {
                 if (f != null && f.canRead()) {
                     getLog().debug("Reading dict-file " + f.getName());
-                    dictionaries.addDictionary(f);
+                    files.add(f);
                 }
             }
+            for (final Dictionary dictionary : DictionaryCache.getAll(files))
+                dictionaries.addDictionary(dictionary);
         } catch (final Exception e) {
             throw new MojoFailureException("Cannot load dictionaries", e);
         }
+        getLog().debug("Dictionary cache: " + DictionaryCache.statistics());
+        resolutionCache = ResolutionCache.forSession(session);
 
         // Get the artifacts
         Set<Artifact> dependencies;
@@ -171,63 +267,252 @@ public abstract class AbstractEAP6Mojo extends AbstractMojo {
             for (final Artifact x : dependencies)
                 getLog().debug("Project-Dependency Artifact: <" + x + "> type: <" + x.getType() + "> scope: <" + x.getScope() + ">");
         }
-        // Find artifacts that are not provided, but in the dictionary,
-        // and warn
-        final Set<Artifact> artifactsNotMatchingScope = new TreeSet<Artifact>();
-        final Set<Artifact> artifactsNotMatchingType = new TreeSet<Artifact>();
-        final Set<Artifact> artifactsMatchingExPatterns = new TreeSet<Artifact>();
-
-        // Find artifacts that should be in deployment structure, that is,
-        // all artifacts that have a non-null mapping, and provided
-        artifactsAsModules = new HashMap<Artifact, String>();
-
-        reverseMap = new HashMap<String, Artifact>();
 
         getLog().info("Excluded artifacts: " + listToString(excludedArtifacts));
 
         final ArtifactFilter artifactFilter = excludedArtifacts != null ? new StrictPatternExcludesArtifactFilter(excludedArtifacts) : null;
+        classification = new ArtifactClassifier(getLog(), resolutionCache, dictionaries, allowedDepScopes, allowedDepTypes, artifactFilter)
+                .classify(dependencies);
+        artifactIndex = new ArtifactIndex(dependencies, classification);
 
-        for (final Artifact a : dependencies) {
-            final DictItem item = dictionaries.find(getLog(), a.getGroupId(), a.getArtifactId(), a.getVersion());
-            if (item != null && item.getModuleName() != null) {
-                reverseMap.put(item.getModuleName(), a);
-
-                if (!isMatchingScope(a)) {
-                    artifactsNotMatchingScope.add(a);
-                } else {
-                    if (!isMatchingType(a)) {
-                        artifactsNotMatchingType.add(a);
-                    } else {
-                        if (artifactFilter != null && !artifactFilter.include(a)) {
-                            artifactsMatchingExPatterns.add(a);
-                        } else {
-                            artifactsAsModules.put(a, item.getModuleName());
-                        }
-                    }
-                }
-            } else {
-                if (verbose) {
-                    getLog().info("No matching dict-entry for artifact <" + a + "> found");
-                }
-            }
+        if (verbose) {
+            for (final Artifact a : classification.getUnmapped())
+                getLog().info("No matching dict-entry for artifact <" + a + "> found");
+        }
+        if (printArtifactWarnings) {
+            for (final Map.Entry<Artifact, DictItem> entry : classification.getScopeMismatches().entrySet())
+                getLog().warn("EAP6: Artifact <" + entry.getKey() + "> is not of required scope \"" + listToString(allowedDepScopes)
+                        + "\", but can be included as an EAP6 module " + entry.getValue());
+            for (final Artifact a : classification.getTypeMismatches().keySet())
+                getLog().warn("EAP6: Artifact <" + a + "> is not of required type \"" + listToString(allowedDepTypes) + "\"");
+            for (final Artifact a : classification.getExcluded().keySet())
+                getLog().warn("EAP6: Artifact <" + a + "> matches excluded artifact-patterns");
         }
+        moduleDependencies = analyzeModuleUsage(classification.getMapped());
+        analyzePathFilters();
+        savePackageCache();
+    }
 
-        for (final Artifact a : artifactsNotMatchingScope) {
-            if (printArtifactWarnings) {
-                getLog().warn("EAP6: Artifact <" + a + "> is not of required scope \"" + listToString(allowedDepScopes)
-                        + "\", but can be included as an EAP6 module " + dictionaries.find(getLog(), a.getGroupId(), a.getArtifactId(), a.getVersion()));
-            }
+    /**
+     * Computes the fingerprint of the inputs of the descriptor, if incremental is set
+     *
+     * @return true if the descriptor exists and was generated from the same inputs, so nothing needs to be done
+     */
+    protected boolean isUpToDate(final File outputFile, final String skeletonFileName) throws MojoFailureException {
+        if (!incremental || project == null)
+            return false;
+        try {
+            inputFingerprint = new InputFingerprint(new File(project.getBuild().getDirectory(), "eap6-" + outputFile.getName() + ".fingerprint"));
+            final File plugin = FileUtils.toFile(AbstractEAP6Mojo.class.getProtectionDomain().getCodeSource().getLocation());
+            inputFingerprint.add("plugin", plugin.getPath() + "|" + plugin.length() + "|" + plugin.lastModified());
+            inputFingerprint.add("project", project.getGroupId() + ":" + project.getArtifactId() + ":" + project.getVersion() + ":" + project.getPackaging());
+            inputFingerprint.addArtifacts("dependencies", project.getArtifacts());
+            if (dictionaryFiles != null)
+                for (final File f : dictionaryFiles)
+                    inputFingerprint.addFile("dictionary", f, buildContext);
+            inputFingerprint.addFile("skeleton", skeletonDir != null ? new File(skeletonDir, skeletonFileName) : null, buildContext);
+            inputFingerprint.add("output", outputFile.getAbsolutePath());
+            inputFingerprint.add("encoding", encoding);
+            inputFingerprint.add("allowedDepScopes", allowedDepScopes);
+            inputFingerprint.add("allowedDepTypes", allowedDepTypes);
+            inputFingerprint.add("excludedArtifacts", excludedArtifacts);
+            inputFingerprint.add("modulesRoot", modulesRoot);
+            inputFingerprint.add("unusedModules", unusedModules);
+            inputFingerprint.add("generatePathFilters", generatePathFilters);
+            inputFingerprint.add("streamingXml", streamingXml);
+            if (generatePathFilters || !"keep".equalsIgnoreCase(unusedModules))
+                inputFingerprint.addDirectory("classes", new File(project.getBuild().getOutputDirectory()), ".class");
+            addInputs(inputFingerprint);
+        } catch (final IOException e) {
+            throw new MojoFailureException("Cannot compute input fingerprint", e);
         }
-        for (final Artifact a : artifactsNotMatchingType) {
-            if (printArtifactWarnings) {
-                getLog().warn("EAP6: Artifact <" + a + "> is not of required type \"" + listToString(allowedDepTypes) + "\"");
-            }
+        if (!outputFile.isFile() || !inputFingerprint.isUnchanged())
+            return false;
+        getLog().info("EAP6: <" + outputFile + "> is up to date, inputs unchanged");
+        return true;
+    }
+
+    /**
+     * Adds the goal specific inputs of the descriptor to the fingerprint
+     */
+    protected void addInputs(final InputFingerprint fingerprint) throws IOException {
+    }
+
+    /**
+     * Stores the input fingerprint after the descriptor was written
+     */
+    protected void saveInputFingerprint() {
+        if (inputFingerprint == null)
+            return;
+        try {
+            inputFingerprint.save();
+        } catch (final IOException e) {
+            getLog().warn("Cannot save input fingerprint: " + e.getMessage());
         }
-        for (final Artifact a : artifactsMatchingExPatterns) {
-            if (printArtifactWarnings) {
-                getLog().warn("EAP6: Artifact <" + a + "> matches excluded artifact-patterns");
+    }
+
+    /**
+     * Checks the mapped modules against the packages referenced by the compiled classes, as configured by unusedModules
+     *
+     * @return the module dependencies to generate
+     */
+    protected Map<Artifact, String> analyzeModuleUsage(final Map<Artifact, String> mapped) throws MojoFailureException {
+        final boolean remove = "remove".equalsIgnoreCase(unusedModules);
+        if (!remove && !"warn".equalsIgnoreCase(unusedModules))
+            return mapped;
+        final Set<String> referenced = getReferencedPackages();
+        if (referenced == null)
+            return mapped;
+        final Set<String> unused;
+        try {
+            unused = ModuleUsage.findUnused(mapped, referenced);
+        } catch (final IOException e) {
+            throw new MojoFailureException("Cannot analyze module usage", e);
+        }
+        if (unused.isEmpty())
+            return mapped;
+        for (final String module : unused)
+            getLog().warn("EAP6: No class refers to module " + module + (remove ? ", dependency removed" : ""));
+        if (!remove)
+            return mapped;
+        final Map<Artifact, String> used = new LinkedHashMap<Artifact, String>();
+        for (final Map.Entry<Artifact, String> entry : mapped.entrySet())
+            if (!unused.contains(entry.getValue()))
+                used.put(entry.getKey(), entry.getValue());
+        return used;
+    }
+
+    /**
+     * Computes the packages used from each module dependency for path filters, if generatePathFilters is set
+     */
+    protected void analyzePathFilters() throws MojoFailureException {
+        if (!generatePathFilters)
+            return;
+        final Set<String> referenced = getReferencedPackages();
+        if (referenced == null)
+            return;
+        try {
+            modulePaths = ModuleUsage.findUsedPackages(moduleDependencies, referenced);
+        } catch (final IOException e) {
+            throw new MojoFailureException("Cannot analyze module usage", e);
+        }
+    }
+
+    /**
+     * Returns the packages referenced by the compiled classes of the project, scanned once; null if there are no compiled classes
+     */
+    protected Set<String> getReferencedPackages() throws MojoFailureException {
+        if (referencedPackages != null)
+            return referencedPackages;
+        final File classes = project != null ? new File(project.getBuild().getOutputDirectory()) : null;
+        if (classes == null || ClassReferenceScanner.countClasses(classes) == 0) {
+            getLog().debug("No compiled classes, module usage is not analyzed");
+            return null;
+        }
+        try {
+            if (packageCacheFile != null)
+                JarPackageCache.load(packageCacheFile);
+            final long start = System.currentTimeMillis();
+            referencedPackages = ClassReferenceScanner.scan(classes);
+            getLog().debug("Compiled classes refer to " + referencedPackages.size() + " packages, scanned in " + (System.currentTimeMillis() - start)
+                    + " ms");
+        } catch (final IOException e) {
+            throw new MojoFailureException("Cannot scan compiled classes", e);
+        }
+        return referencedPackages;
+    }
+
+    /**
+     * Saves the package cache, if module usage was analyzed
+     */
+    protected void savePackageCache() {
+        if (referencedPackages == null || packageCacheFile == null)
+            return;
+        try {
+            JarPackageCache.save(packageCacheFile);
+        } catch (final IOException e) {
+            getLog().warn("Cannot save package cache " + packageCacheFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the Jandex index into the classes directory, if generateJandexIndex is set and the classes changed since the last index
+     */
+    protected void generateJandexIndex() throws MojoFailureException {
+        if (!generateJandexIndex || project == null)
+            return;
+        final File classes = new File(project.getBuild().getOutputDirectory());
+        if (ClassReferenceScanner.countClasses(classes) == 0) {
+            getLog().debug("No compiled classes, no Jandex index");
+            return;
+        }
+        try {
+            final int count = new JandexIndexer(classes).index(new File(project.getBuild().getDirectory(), "eap6-jandex.fingerprint"));
+            final File indexFile = new File(classes, JandexIndexer.INDEX);
+            if (count < 0) {
+                getLog().debug("Jandex index <" + indexFile + "> is up to date");
+                return;
             }
+            getLog().info("Jandex index of " + count + " classes written to <" + indexFile + ">");
+            if (buildContext != null)
+                buildContext.refresh(indexFile);
+        } catch (final IOException e) {
+            throw new MojoFailureException("Cannot write Jandex index", e);
+        }
+    }
+
+    /**
+     * Path of the exclude terminating an import filter: JBoss modules imports paths no filter matches, so the includes alone would restrict nothing
+     */
+    public static final String EXCLUDE_ALL = "**";
+
+    /**
+     * Adds <code>&lt;imports&gt;&lt;include path="..."/&gt;...&lt;exclude path="**"/&gt;&lt;/imports&gt;</code> with the packages used from the
+     * module, if known
+     */
+    protected void appendPathFilter(final Document doc, final Element moduleEl, final String module) {
+        final List<String> paths = getIncludePaths(module);
+        if (paths == null)
+            return;
+        final Element imports = doc.createElement("imports");
+        for (final String path : paths) {
+            final Element include = doc.createElement("include");
+            include.setAttribute("path", path);
+            imports.appendChild(include);
         }
+        final Element exclude = doc.createElement("exclude");
+        exclude.setAttribute("path", EXCLUDE_ALL);
+        imports.appendChild(exclude);
+        moduleEl.appendChild(imports);
+    }
+
+    /**
+     * Returns the paths of the packages used from the module for a path filter, or null if not known
+     */
+    protected List<String> getIncludePaths(final String module) {
+        final Set<String> packages = modulePaths != null ? modulePaths.get(module) : null;
+        if (packages == null || packages.isEmpty())
+            return null;
+        final List<String> paths = new ArrayList<String>(packages.size());
+        for (final String p : packages)
+            paths.add(p.replace('.', '/'));
+        return paths;
+    }
+
+    /**
+     * Finds the dictionary mapping of an artifact through the resolution cache of the build session
+     */
+    protected DictItem findMapping(final String groupId, final String artifactId, final String version) {
+        return resolutionCache.find(getLog(), dictionaries, groupId, artifactId, version);
+    }
+
+    /**
+     * Prints the statistics of the resolution cache, cumulated over the executions of the build so far
+     */
+    protected void printResolutionStatistics() {
+        if (resolutionCache == null)
+            return;
+        getLog().debug("EAP6 dictionary resolution, build so far: " + resolutionCache.statistics());
     }
 
     protected String listToString(final List<String> list) {
@@ -239,42 +524,95 @@ public abstract class AbstractEAP6Mojo extends AbstractMojo {
         return sb.toString();
     }
 
-    protected boolean isMatchingScope(final Artifact a) {
-        return allowedDepScopes.contains(a.getScope());
-    }
-
-    protected boolean isMatchingType(final Artifact a) {
-        return (allowedDepTypes.isEmpty() ? true : allowedDepTypes.contains(a.getType()));
+    /**
+     * Omits the modules visible through the exports of another module or of a parent module, if modulesRoot is given
+     *
+     * @return the modules to add, in order
+     */
+    protected List<String> pruneModules(final Collection<String> modules, final Collection<String> parents, final String slot, final String context)
+            throws MojoFailureException {
+        final List<String> result = new ArrayList<String>(new LinkedHashSet<String>(modules));
+        if (modulesRoot == null)
+            return result;
+        final Map<String, String> pruned;
+        try {
+            pruned = ModuleGraph.forRoot(modulesRoot).prune(result, parents, slot);
+        } catch (final IOException e) {
+            throw new MojoFailureException("Cannot read modules of " + modulesRoot, e);
+        }
+        ModuleGraph.report(getLog(), context, pruned);
+        result.removeAll(pruned.keySet());
+        if (modulePaths != null) {
+            // a pruned module is used through the module exporting it
+            for (final String module : pruned.keySet()) {
+                String cover = pruned.get(module);
+                while (pruned.containsKey(cover))
+                    cover = pruned.get(cover);
+                final Set<String> paths = modulePaths.get(module);
+                if (paths == null)
+                    modulePaths.remove(cover);
+                else if (modulePaths.containsKey(cover))
+                    modulePaths.get(cover).addAll(paths);
+            }
+        }
+        return result;
     }
 
     protected Artifact findArtifact(final String groupId, final String artifactId) {
-        final Set<Artifact> artifacts = project.getArtifacts();
+        final Artifact artifact = artifactIndex.find(groupId, artifactId);
         if (verbose) {
-            getLog().debug("Searching " + groupId + ":" + artifactId + " in " + artifacts);
+            getLog().debug("Searching " + groupId + ":" + artifactId + ": " + artifact);
         }
-        for (final Artifact x : artifacts) {
-            if (x.getGroupId().equals(groupId) && x.getArtifactId().equals(artifactId))
-                return x;
+        return artifact;
+    }
+
+    /**
+     * Warns about module elements without a dependency mapped to the module, or without one in provided scope
+     */
+    protected void validateModuleDependencies(final NodeList modules) {
+        final List<String> names = new ArrayList<String>();
+        for (int i = 0; i < modules.getLength(); i++)
+            names.add(((Element) modules.item(i)).getAttribute("name"));
+        validateModuleDependencies(names);
+    }
+
+    /**
+     * Warns about modules without a dependency mapped to the module, or without one in provided scope
+     */
+    protected void validateModuleDependencies(final Collection<String> modules) {
+        for (final String mname : modules) {
+            final List<Artifact> artifacts = artifactIndex.findByModule(mname);
+            if (artifacts.isEmpty()) {
+                getLog().warn("No dependencies to module " + mname);
+                continue;
+            }
+            boolean provided = false;
+            for (final Artifact a : artifacts)
+                provided |= Artifact.SCOPE_PROVIDED.equals(a.getScope());
+            if (!provided)
+                getLog().warn("Module does not appear with provided scope in POM:" + mname);
         }
-        return null;
+    }
+
+    /**
+     * Returns the skeleton file in skeletonDir, or null if there is none and the built-in skeleton is used
+     */
+    protected File getSkeletonFile(final String skeletonFileName) {
+        final File skeletonFile = skeletonDir != null ? new File(skeletonDir, skeletonFileName) : null;
+        return skeletonFile != null && skeletonFile.exists() ? skeletonFile : null;
     }
 
     protected Document initializeSkeletonFile(final String skeletonFileName) throws MojoFailureException {
         // Is there a skeleton file?
         Document doc;
         try {
-            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setNamespaceAware(true);
-            File skeletonFile = null;
-            if (skeletonDir != null)
-                skeletonFile = new File(skeletonDir, skeletonFileName);
-            if (!skeletonFile.exists())
-                skeletonFile = null;
+            final File skeletonFile = getSkeletonFile(skeletonFileName);
             if (skeletonFile != null) {
-                doc = factory.newDocumentBuilder().parse(skeletonFile);
+                doc = SkeletonCache.get(skeletonFile);
             } else {
-                doc = factory.newDocumentBuilder().parse(getClass().getResourceAsStream("/" + skeletonFileName));
+                doc = SkeletonCache.getResource("/" + skeletonFileName);
             }
+            getLog().debug("Skeleton cache: " + SkeletonCache.statistics());
 
             return doc;
         } catch (final Exception e) {
@@ -286,13 +624,12 @@ public abstract class AbstractEAP6Mojo extends AbstractMojo {
         final File destinationFile = new File(workDirectory, fileName);
         try {
             final FileOutputStream ostream = new FileOutputStream(destinationFile);
-            final DOMImplementationLS domImplementation = (DOMImplementationLS) doc.getImplementation();
-            final LSSerializer lsSerializer = domImplementation.createLSSerializer();
-            lsSerializer.getDomConfig().setParameter("format-pretty-print", Boolean.TRUE);
-
-            final LSOutput lsOutput = domImplementation.createLSOutput();
+            final LSOutput lsOutput = XmlSupport.domImplementation().createLSOutput();
             lsOutput.setByteStream(ostream);
-            lsSerializer.write(doc, lsOutput);
+            final String skeletonEncoding = SkeletonCache.getEncoding(doc);
+            if (skeletonEncoding != null)
+                lsOutput.setEncoding(skeletonEncoding);
+            XmlSupport.serializer().write(doc, lsOutput);
 
             ostream.close();
             refreshEclipse(destinationFile);
@@ -301,6 +638,32 @@ public abstract class AbstractEAP6Mojo extends AbstractMojo {
         }
     }
 
+    /**
+     * Writes the skeleton with the modules merged by the streaming writer, through a buffered file channel
+     */
+    protected void writeXmlFile(final StreamingDescriptorWriter descriptor, final String skeletonFileName, final File workDirectory,
+            final String fileName) throws MojoFailureException {
+        final File destinationFile = new File(workDirectory, fileName);
+        try {
+            final File skeletonFile = getSkeletonFile(skeletonFileName);
+            final InputStream skeleton = skeletonFile != null ? new FileInputStream(skeletonFile) : getClass().getResourceAsStream("/" + skeletonFileName);
+            try {
+                final OutputStream ostream = new BufferedOutputStream(Channels.newOutputStream(FileChannel.open(destinationFile.toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)), 64 * 1024);
+                try {
+                    descriptor.write(skeleton, ostream);
+                } finally {
+                    ostream.close();
+                }
+            } finally {
+                skeleton.close();
+            }
+            refreshEclipse(destinationFile);
+        } catch (final Exception e) {
+            throw new MojoFailureException("Cannot write output file", e);
+        }
+    }
+
     protected void writeXmlFile(final String content, final File workDirectory, final String fileName) throws MojoFailureException {
         final File destinationFile = new File(workDirectory, fileName);
 
@@ -332,13 +695,9 @@ public abstract class AbstractEAP6Mojo extends AbstractMojo {
     protected String getStringFromDocument(final Document doc) {
         try {
             final StringWriter writer = new StringWriter();
-            final DOMImplementationLS domImplementation = (DOMImplementationLS) doc.getImplementation();
-            final LSSerializer lsSerializer = domImplementation.createLSSerializer();
-            lsSerializer.getDomConfig().setParameter("format-pretty-print", Boolean.TRUE);
-
-            final LSOutput lsOutput = domImplementation.createLSOutput();
+            final LSOutput lsOutput = XmlSupport.domImplementation().createLSOutput();
             lsOutput.setCharacterStream(writer);
-            lsSerializer.write(doc, lsOutput);
+            XmlSupport.serializer().write(doc, lsOutput);
 
             return writer.toString();
         } catch (final LSException ex) {
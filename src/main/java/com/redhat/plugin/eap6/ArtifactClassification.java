@@ -0,0 +1,123 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * Immutable result of classifying the project dependencies against the dictionaries: every dependency is in exactly one category.
+ */
+public final class ArtifactClassification {
+
+    public enum Category {
+        /** mapped to a module and included in the descriptor */
+        MAPPED,
+        /** mapped to a module, but not of an allowed scope */
+        SCOPE_MISMATCH,
+        /** mapped to a module, but not of an allowed type */
+        TYPE_MISMATCH,
+        /** mapped to a module, but matching excludedArtifacts */
+        EXCLUDED,
+        /** no module in the dictionaries */
+        UNMAPPED
+    }
+
+    private final Map<Artifact, String> mapped;
+    private final Map<Artifact, DictItem> scopeMismatches;
+    private final Map<Artifact, DictItem> typeMismatches;
+    private final Map<Artifact, DictItem> excluded;
+    private final Set<Artifact> unmapped;
+
+    ArtifactClassification(final Map<Artifact, String> mapped, final Map<Artifact, DictItem> scopeMismatches, final Map<Artifact, DictItem> typeMismatches,
+            final Map<Artifact, DictItem> excluded, final Set<Artifact> unmapped) {
+        this.mapped = Collections.unmodifiableMap(new LinkedHashMap<Artifact, String>(mapped));
+        this.scopeMismatches = Collections.unmodifiableMap(new TreeMap<Artifact, DictItem>(scopeMismatches));
+        this.typeMismatches = Collections.unmodifiableMap(new TreeMap<Artifact, DictItem>(typeMismatches));
+        this.excluded = Collections.unmodifiableMap(new TreeMap<Artifact, DictItem>(excluded));
+        this.unmapped = Collections.unmodifiableSet(new TreeSet<Artifact>(unmapped));
+    }
+
+    /**
+     * Artifacts to include as module dependencies, with their module names, in dependency order
+     */
+    public Map<Artifact, String> getMapped() {
+        return mapped;
+    }
+
+    /**
+     * Mapped artifacts not of an allowed scope, sorted
+     */
+    public Map<Artifact, DictItem> getScopeMismatches() {
+        return scopeMismatches;
+    }
+
+    /**
+     * Mapped artifacts not of an allowed type, sorted
+     */
+    public Map<Artifact, DictItem> getTypeMismatches() {
+        return typeMismatches;
+    }
+
+    /**
+     * Mapped artifacts matching excludedArtifacts, sorted
+     */
+    public Map<Artifact, DictItem> getExcluded() {
+        return excluded;
+    }
+
+    /**
+     * Artifacts without module, sorted
+     */
+    public Set<Artifact> getUnmapped() {
+        return unmapped;
+    }
+
+    /**
+     * Returns the module of the artifact in any category but {@link Category#UNMAPPED}, or null
+     */
+    public String getModuleName(final Artifact artifact) {
+        final String module = mapped.get(artifact);
+        if (module != null)
+            return module;
+        DictItem item = scopeMismatches.get(artifact);
+        if (item == null)
+            item = typeMismatches.get(artifact);
+        if (item == null)
+            item = excluded.get(artifact);
+        return item != null ? item.getModuleName() : null;
+    }
+
+    public Category getCategory(final Artifact artifact) {
+        if (mapped.containsKey(artifact))
+            return Category.MAPPED;
+        if (scopeMismatches.containsKey(artifact))
+            return Category.SCOPE_MISMATCH;
+        if (typeMismatches.containsKey(artifact))
+            return Category.TYPE_MISMATCH;
+        if (excluded.containsKey(artifact))
+            return Category.EXCLUDED;
+        return unmapped.contains(artifact) ? Category.UNMAPPED : null;
+    }
+}
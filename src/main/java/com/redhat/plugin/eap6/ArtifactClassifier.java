@@ -0,0 +1,159 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
+import org.apache.maven.plugin.logging.Log;
+
+import com.redhat.plugin.eap6.ArtifactClassification.Category;
+
+/**
+ * Classifies dependencies in a single pass: one dictionary lookup per artifact, with scopes, types and exclusions evaluated against prepared sets.
+ * Large dependency sets are classified in parallel; the result does not depend on it.
+ */
+public class ArtifactClassifier {
+
+    /**
+     * Dependency count from which artifacts are classified in parallel
+     */
+    static final int PARALLEL_THRESHOLD = 256;
+
+    private static final int CHUNK = 64;
+
+    private final Log logger;
+    private final ResolutionCache resolutionCache;
+    private final Dictionaries dictionaries;
+    private final Set<String> scopes;
+    private final Set<String> types;
+    private final ArtifactFilter exclusions;
+
+    /**
+     * @param types
+     *            allowed types; all types if empty or null
+     * @param exclusions
+     *            filter not including excluded artifacts, or null
+     */
+    public ArtifactClassifier(final Log logger, final ResolutionCache resolutionCache, final Dictionaries dictionaries, final Collection<String> scopes,
+            final Collection<String> types, final ArtifactFilter exclusions) {
+        this.logger = logger;
+        this.resolutionCache = resolutionCache;
+        this.dictionaries = dictionaries;
+        this.scopes = new HashSet<String>(scopes);
+        this.types = types == null || types.isEmpty() ? null : new HashSet<String>(types);
+        this.exclusions = exclusions;
+    }
+
+    public ArtifactClassification classify(final Collection<Artifact> dependencies) {
+        final List<Artifact> artifacts = new ArrayList<Artifact>(dependencies);
+        final Category[] categories = new Category[artifacts.size()];
+        final DictItem[] items = new DictItem[artifacts.size()];
+        if (artifacts.size() >= PARALLEL_THRESHOLD) {
+            SharedForkJoinPool.get().invoke(new ClassifyTask(artifacts, categories, items, 0, artifacts.size()));
+        } else {
+            classify(artifacts, categories, items, 0, artifacts.size());
+        }
+
+        final Map<Artifact, String> mapped = new LinkedHashMap<Artifact, String>();
+        final Map<Artifact, DictItem> scopeMismatches = new HashMap<Artifact, DictItem>();
+        final Map<Artifact, DictItem> typeMismatches = new HashMap<Artifact, DictItem>();
+        final Map<Artifact, DictItem> excluded = new HashMap<Artifact, DictItem>();
+        final Set<Artifact> unmapped = new HashSet<Artifact>();
+        for (int i = 0; i < categories.length; i++) {
+            final Artifact a = artifacts.get(i);
+            switch (categories[i]) {
+            case MAPPED:
+                mapped.put(a, items[i].getModuleName());
+                break;
+            case SCOPE_MISMATCH:
+                scopeMismatches.put(a, items[i]);
+                break;
+            case TYPE_MISMATCH:
+                typeMismatches.put(a, items[i]);
+                break;
+            case EXCLUDED:
+                excluded.put(a, items[i]);
+                break;
+            default:
+                unmapped.add(a);
+            }
+        }
+        return new ArtifactClassification(mapped, scopeMismatches, typeMismatches, excluded, unmapped);
+    }
+
+    private void classify(final List<Artifact> artifacts, final Category[] categories, final DictItem[] items, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            final Artifact a = artifacts.get(i);
+            final DictItem item = resolutionCache.find(logger, dictionaries, a.getGroupId(), a.getArtifactId(), a.getVersion());
+            if (item == null || item.getModuleName() == null) {
+                categories[i] = Category.UNMAPPED;
+            } else {
+                items[i] = item;
+                if (!scopes.contains(a.getScope()))
+                    categories[i] = Category.SCOPE_MISMATCH;
+                else if (types != null && !types.contains(a.getType()))
+                    categories[i] = Category.TYPE_MISMATCH;
+                else if (exclusions != null && !exclusions.include(a))
+                    categories[i] = Category.EXCLUDED;
+                else
+                    categories[i] = Category.MAPPED;
+            }
+        }
+    }
+
+    /**
+     * Classifies a range of the artifacts, splitting it while larger than a chunk
+     */
+    private class ClassifyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Artifact> artifacts;
+        private final Category[] categories;
+        private final DictItem[] items;
+        private final int from;
+        private final int to;
+
+        ClassifyTask(final List<Artifact> artifacts, final Category[] categories, final DictItem[] items, final int from, final int to) {
+            this.artifacts = artifacts;
+            this.categories = categories;
+            this.items = items;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK) {
+                classify(artifacts, categories, items, from, to);
+            } else {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new ClassifyTask(artifacts, categories, items, from, middle), new ClassifyTask(artifacts, categories, items, middle, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * Lookup of the project dependencies by groupId:artifactId, by groupId:artifactId:version and by module name, built once per execution.
+ */
+public class ArtifactIndex {
+
+    private final Map<String, Artifact> byGa = new HashMap<String, Artifact>();
+    private final Map<String, Artifact> byGav = new HashMap<String, Artifact>();
+    private final Map<String, List<Artifact>> byModule = new HashMap<String, List<Artifact>>();
+
+    /**
+     * @param classification
+     *            gives the module names of the artifacts; may be null
+     */
+    public ArtifactIndex(final Collection<Artifact> artifacts, final ArtifactClassification classification) {
+        for (final Artifact a : artifacts) {
+            // the first artifact wins, as the former scan over the dependencies
+            final String ga = Dictionary.key(a.getGroupId(), a.getArtifactId());
+            if (!byGa.containsKey(ga))
+                byGa.put(ga, a);
+            final String gav = ga + ':' + a.getVersion();
+            if (!byGav.containsKey(gav))
+                byGav.put(gav, a);
+            final String module = classification != null ? classification.getModuleName(a) : null;
+            if (module != null) {
+                List<Artifact> list = byModule.get(module);
+                if (list == null) {
+                    list = new ArrayList<Artifact>(1);
+                    byModule.put(module, list);
+                }
+                list.add(a);
+            }
+        }
+    }
+
+    /**
+     * Returns the dependency groupId:artifactId, or null
+     */
+    public Artifact find(final String groupId, final String artifactId) {
+        return byGa.get(Dictionary.key(groupId, artifactId));
+    }
+
+    /**
+     * Returns the dependency groupId:artifactId:version, or null
+     */
+    public Artifact find(final String groupId, final String artifactId, final String version) {
+        return byGav.get(Dictionary.key(groupId, artifactId) + ':' + version);
+    }
+
+    /**
+     * Returns all dependencies mapped to the module, in dependency order; empty if there are none
+     */
+    public List<Artifact> findByModule(final String moduleName) {
+        final List<Artifact> list = byModule.get(moduleName);
+        return list != null ? Collections.unmodifiableList(list) : Collections.<Artifact> emptyList();
+    }
+}
@@ -0,0 +1,65 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Replaces files with a completely written temporary file next to them, so neither an interrupted build nor a concurrent build in another process
+ * leaves or reads a partial file. Usage:
+ *
+ * <pre>
+ * final File tmp = AtomicFiles.createTemp(file);
+ * try {
+ *     // write tmp
+ *     AtomicFiles.replace(tmp, file);
+ * } finally {
+ *     tmp.delete();
+ * }
+ * </pre>
+ */
+public final class AtomicFiles {
+
+    private AtomicFiles() {
+    }
+
+    /**
+     * Creates a uniquely named temporary file in the directory of the file, creating the directory if needed
+     */
+    public static File createTemp(final File file) throws IOException {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists())
+            parent.mkdirs();
+        return File.createTempFile(file.getName() + ".", ".tmp", parent);
+    }
+
+    /**
+     * Moves the temporary file over the file, atomically where the file system supports it
+     */
+    public static void replace(final File tmp, final File file) throws IOException {
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
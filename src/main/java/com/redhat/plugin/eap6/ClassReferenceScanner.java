@@ -0,0 +1,200 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Collects the packages referenced by compiled classes, reading only the constant pool of each class file: class entries and the type names in
+ * descriptors and signatures. Class files are read in parallel.
+ */
+public class ClassReferenceScanner {
+
+    private static final int CHUNK = 32;
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    /**
+     * Returns the referenced packages (dot separated) of all class files below the directory
+     */
+    public static Set<String> scan(final File classesDirectory) throws IOException {
+        final List<File> files = new ArrayList<File>();
+        collect(classesDirectory, files);
+        if (files.isEmpty())
+            return new HashSet<String>();
+        try {
+            return SharedForkJoinPool.get().invoke(new ScanTask(files, 0, files.size()));
+        } catch (final RuntimeException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of class files below the directory
+     */
+    public static int countClasses(final File classesDirectory) {
+        final List<File> files = new ArrayList<File>();
+        collect(classesDirectory, files);
+        return files.size();
+    }
+
+    private static void collect(final File directory, final List<File> files) {
+        final File[] children = directory.listFiles();
+        if (children == null)
+            return;
+        for (final File f : children) {
+            if (f.isDirectory())
+                collect(f, files);
+            else if (f.getName().endsWith(".class"))
+                files.add(f);
+        }
+    }
+
+    /**
+     * Adds the packages referenced in the constant pool of the class file to the set
+     */
+    public static void readClass(final byte[] b, final Set<String> packages) throws IOException {
+        if (b.length < 10 || readInt(b, 0) != MAGIC)
+            throw new IOException("Not a class file");
+        final int count = readShort(b, 8);
+        int pos = 10;
+        for (int i = 1; i < count; i++) {
+            final int tag = b[pos] & 0xff;
+            switch (tag) {
+            case 1: // Utf8: class names, descriptors, signatures
+                final int length = readShort(b, pos + 1);
+                addTypeNames(new String(b, pos + 3, length, StandardCharsets.UTF_8), packages);
+                pos += 3 + length;
+                break;
+            case 5: // Long
+            case 6: // Double
+                pos += 9;
+                i++;
+                break;
+            case 3: // Integer
+            case 4: // Float
+            case 9: // Fieldref
+            case 10: // Methodref
+            case 11: // InterfaceMethodref
+            case 12: // NameAndType
+            case 17: // Dynamic
+            case 18: // InvokeDynamic
+                pos += 5;
+                break;
+            case 15: // MethodHandle
+                pos += 4;
+                break;
+            case 7: // Class
+            case 8: // String
+            case 16: // MethodType
+            case 19: // Module
+            case 20: // Package
+                pos += 3;
+                break;
+            default:
+                throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+    }
+
+    /**
+     * Internal names (<code>org/example/Foo</code>) and type names in descriptors (<code>Lorg/example/Foo;</code>); strings that are neither are
+     * mostly without '/' and add nothing
+     */
+    static void addTypeNames(final String s, final Set<String> packages) {
+        int start = s.indexOf('L');
+        if (start < 0 || s.indexOf(';') < 0) {
+            addPackage(s, 0, s.length(), packages);
+            return;
+        }
+        // descriptor or signature
+        while (start >= 0) {
+            int end = start + 1;
+            while (end < s.length() && s.charAt(end) != ';' && s.charAt(end) != '<' && s.charAt(end) != '(')
+                end++;
+            if (end < s.length())
+                addPackage(s, start + 1, end, packages);
+            start = s.indexOf('L', end);
+        }
+    }
+
+    private static void addPackage(final String s, final int start, final int end, final Set<String> packages) {
+        final int slash = s.lastIndexOf('/', end - 1);
+        if (slash <= start)
+            return;
+        for (int i = start; i < slash; i++) {
+            final char c = s.charAt(i);
+            if (c != '/' && !Character.isJavaIdentifierPart(c))
+                return;
+        }
+        packages.add(s.substring(start, slash).replace('/', '.'));
+    }
+
+    private static int readShort(final byte[] b, final int pos) {
+        return ((b[pos] & 0xff) << 8) | (b[pos + 1] & 0xff);
+    }
+
+    private static int readInt(final byte[] b, final int pos) {
+        return (readShort(b, pos) << 16) | readShort(b, pos + 2);
+    }
+
+    private static class ScanTask extends RecursiveTask<Set<String>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<File> files;
+        private final int from;
+        private final int to;
+
+        ScanTask(final List<File> files, final int from, final int to) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Set<String> compute() {
+            if (to - from > CHUNK) {
+                final int middle = (from + to) >>> 1;
+                final ScanTask left = new ScanTask(files, from, middle);
+                left.fork();
+                final Set<String> result = new ScanTask(files, middle, to).compute();
+                result.addAll(left.join());
+                return result;
+            }
+            final Set<String> result = new HashSet<String>();
+            for (int i = from; i < to; i++) {
+                try {
+                    readClass(Files.readAllBytes(files.get(i).toPath()), result);
+                } catch (final IOException e) {
+                    throw new RuntimeException(new IOException("Cannot read " + files.get(i) + ": " + e.getMessage(), e));
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.CRC32;
+
+/**
+ * Dictionary in the binary format written by the compile-dictionary goal. The file is memory-mapped and entries are only decoded for the looked-up
+ * groupId:artifactId, once per groupId:artifactId. The checksum is verified once per size and last-modified time of a file.
+ *
+ * Layout (big endian):
+ * <ul>
+ * <li>header: magic, format-version, CRC32 of everything after the header, entry-count, GA-count, slot-count, string-table offset</li>
+ * <li>hash slots: GA-index or -1, linear probing over the hash of "groupId:artifactId"</li>
+ * <li>GA records: key string, first entry, entry count</li>
+ * <li>entries: groupId, artifactId, version, module-name as string references, grouped by GA in file order</li>
+ * <li>string table: length-prefixed UTF-8 strings</li>
+ * </ul>
+ *
+ * Wildcard entries are stored as one group under the key "*", which never matches a "groupId:artifactId", and are loaded into the trie of the dictionary.
+ */
+public class CompiledDictionary extends Dictionary {
+
+    public static final String EXTENSION = ".dictc";
+
+    private static final int MAGIC = 0x45364443; // "E6DC"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int GA_RECORD_SIZE = 12;
+    private static final int ENTRY_RECORD_SIZE = 16;
+    private static final int NO_STRING = -1;
+    private static final String PATTERN_KEY = "*";
+    private static final int MAX_VERIFIED = 256;
+
+    /**
+     * canonical path to size and last-modified time of the files with a verified checksum
+     */
+    private static final Map<String, List<Long>> verified = new LinkedHashMap<String, List<Long>>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, List<Long>> eldest) {
+            return size() > MAX_VERIFIED;
+        }
+    };
+
+    private final ByteBuffer buffer;
+    private final int entryCount;
+    private final int slotCount;
+    private final int gaOffset;
+    private final int entryOffset;
+    private final int stringOffset;
+    private final AtomicReferenceArray<DictBucket> buckets;
+
+    public CompiledDictionary(final File file) throws IOException {
+        super(file.getName(), Collections.<DictItem> emptyList());
+        final String key = file.getCanonicalPath();
+        final List<Long> stamp = Arrays.asList(file.length(), file.lastModified());
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a compiled dictionary: " + file);
+        if (buffer.getInt(4) != FORMAT_VERSION)
+            throw new IOException("Unsupported compiled dictionary version " + buffer.getInt(4) + " in " + file);
+        synchronized (verified) {
+            if (!stamp.equals(verified.get(key))) {
+                if (buffer.getLong(8) != checksum(buffer))
+                    throw new IOException("Checksum mismatch in compiled dictionary " + file);
+                verified.put(key, stamp);
+            }
+        }
+        entryCount = buffer.getInt(16);
+        final int gaCount = buffer.getInt(20);
+        buckets = new AtomicReferenceArray<DictBucket>(gaCount);
+        slotCount = buffer.getInt(24);
+        stringOffset = buffer.getInt(28);
+        gaOffset = HEADER_SIZE + slotCount * 4;
+        entryOffset = gaOffset + gaCount * GA_RECORD_SIZE;
+        final int patterns = findGroup(PATTERN_KEY.getBytes(StandardCharsets.UTF_8));
+        if (patterns >= 0) {
+            final int record = gaOffset + patterns * GA_RECORD_SIZE;
+            final int first = buffer.getInt(record + 4);
+            final int count = buffer.getInt(record + 8);
+            for (int i = first; i < first + count; i++)
+                addPattern(readEntry(i));
+        }
+    }
+
+    /**
+     * Checks the magic number of the file
+     */
+    public static boolean isCompiled(final File file) throws IOException {
+        if (file.length() < HEADER_SIZE)
+            return false;
+        final DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            return in.readInt() == MAGIC;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the checksum stored in the header, which identifies the content of a compiled dictionary without reading it
+     */
+    public static long storedChecksum(final File file) throws IOException {
+        final DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readInt();
+            in.readInt();
+            return in.readLong();
+        } finally {
+            in.close();
+        }
+    }
+
+    @Override
+    public DictBucket getBucket(final String groupId, final String artifactId) {
+        final int ga = findGroup(key(groupId, artifactId).getBytes(StandardCharsets.UTF_8));
+        if (ga < 0)
+            return null;
+        DictBucket bucket = buckets.get(ga);
+        if (bucket == null) {
+            final int record = gaOffset + ga * GA_RECORD_SIZE;
+            bucket = new DictBucket(getName());
+            final int first = buffer.getInt(record + 4);
+            final int count = buffer.getInt(record + 8);
+            for (int i = first; i < first + count; i++)
+                bucket.add(readEntry(i));
+            // a bucket decoded concurrently by another thread is equal, either one may win
+            buckets.compareAndSet(ga, null, bucket);
+            bucket = buckets.get(ga);
+        }
+        return bucket;
+    }
+
+    /**
+     * Returns the index of the GA record with the key, or -1
+     */
+    private int findGroup(final byte[] key) {
+        final int mask = slotCount - 1;
+        int slot = hash(key) & mask;
+        while (true) {
+            final int ga = buffer.getInt(HEADER_SIZE + slot * 4);
+            if (ga < 0 || stringEquals(buffer.getInt(gaOffset + ga * GA_RECORD_SIZE), key))
+                return ga;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Decodes all entries; only needed when the complete list is asked for
+     */
+    @Override
+    public List<DictItem> getDictionary() {
+        final List<DictItem> items = new ArrayList<DictItem>(entryCount);
+        for (int i = 0; i < entryCount; i++)
+            items.add(readEntry(i));
+        return items;
+    }
+
+    private DictItem readEntry(final int index) {
+        final int record = entryOffset + index * ENTRY_RECORD_SIZE;
+        return new DictItem(readString(buffer.getInt(record)), readString(buffer.getInt(record + 4)), readString(buffer.getInt(record + 8)),
+                readString(buffer.getInt(record + 12)));
+    }
+
+    private String readString(final int ref) {
+        if (ref == NO_STRING)
+            return null;
+        final int pos = stringOffset + ref;
+        final byte[] bytes = new byte[buffer.getInt(pos)];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = buffer.get(pos + 4 + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean stringEquals(final int ref, final byte[] value) {
+        final int pos = stringOffset + ref;
+        if (buffer.getInt(pos) != value.length)
+            return false;
+        for (int i = 0; i < value.length; i++) {
+            if (buffer.get(pos + 4 + i) != value[i])
+                return false;
+        }
+        return true;
+    }
+
+    private static int hash(final byte[] key) {
+        int h = 0;
+        for (final byte b : key)
+            h = 31 * h + b;
+        return h ^ (h >>> 16);
+    }
+
+    private static long checksum(final ByteBuffer buf) {
+        final CRC32 crc = new CRC32();
+        final byte[] chunk = new byte[8192];
+        final ByteBuffer body = buf.duplicate();
+        body.position(HEADER_SIZE);
+        while (body.hasRemaining()) {
+            final int n = Math.min(chunk.length, body.remaining());
+            body.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Writes the entries in the compiled format
+     */
+    public static void write(final List<DictItem> items, final File file) throws IOException {
+        // group the entries by GA, keeping the file order inside each group
+        final Map<String, List<DictItem>> groups = new LinkedHashMap<String, List<DictItem>>();
+        for (final DictItem item : items) {
+            final String key = item.isPattern() ? PATTERN_KEY : key(item.getGroupId(), item.getArtifactId());
+            List<DictItem> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<DictItem>();
+                groups.put(key, group);
+            }
+            group.add(item);
+        }
+
+        final StringTable strings = new StringTable();
+        int slotCount = 16;
+        while (slotCount < groups.size() * 2)
+            slotCount <<= 1;
+        final int[] slots = new int[slotCount];
+        Arrays.fill(slots, -1);
+        final int[] gaRecords = new int[groups.size() * 3];
+        final int[] entryRecords = new int[items.size() * 4];
+
+        int ga = 0;
+        int entry = 0;
+        for (final Map.Entry<String, List<DictItem>> group : groups.entrySet()) {
+            final byte[] key = group.getKey().getBytes(StandardCharsets.UTF_8);
+            int slot = hash(key) & (slotCount - 1);
+            while (slots[slot] >= 0)
+                slot = (slot + 1) & (slotCount - 1);
+            slots[slot] = ga;
+            gaRecords[ga * 3] = strings.ref(group.getKey());
+            gaRecords[ga * 3 + 1] = entry;
+            gaRecords[ga * 3 + 2] = group.getValue().size();
+            for (final DictItem item : group.getValue()) {
+                entryRecords[entry * 4] = strings.ref(item.getGroupId());
+                entryRecords[entry * 4 + 1] = strings.ref(item.getArtifactId());
+                entryRecords[entry * 4 + 2] = strings.ref(item.getVersion());
+                entryRecords[entry * 4 + 3] = strings.ref(item.getModuleName());
+                entry++;
+            }
+            ga++;
+        }
+
+        final int stringOffset = HEADER_SIZE + (slots.length + gaRecords.length + entryRecords.length) * 4;
+        final ByteBuffer out = ByteBuffer.allocate(stringOffset + strings.size());
+        out.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(0L).putInt(items.size()).putInt(groups.size()).putInt(slotCount).putInt(stringOffset);
+        for (final int i : slots)
+            out.putInt(i);
+        for (final int i : gaRecords)
+            out.putInt(i);
+        for (final int i : entryRecords)
+            out.putInt(i);
+        strings.writeTo(out);
+        out.putLong(8, checksum(out));
+
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            out.rewind();
+            raf.getChannel().write(out);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * De-duplicating table of length-prefixed UTF-8 strings
+     */
+    private static class StringTable {
+        private final Map<String, Integer> refs = new LinkedHashMap<String, Integer>();
+        private final List<byte[]> values = new ArrayList<byte[]>();
+        private int size;
+
+        int ref(final String s) {
+            if (s == null)
+                return NO_STRING;
+            Integer ref = refs.get(s);
+            if (ref == null) {
+                final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                ref = size;
+                refs.put(s, ref);
+                values.add(bytes);
+                size += 4 + bytes.length;
+            }
+            return ref;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void writeTo(final ByteBuffer out) {
+            for (final byte[] bytes : values) {
+                out.putInt(bytes.length);
+                out.put(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.redhat.plugin.eap6
+
+import java.util.ArrayList
+import java.util.List
+import org.apache.maven.artifact.versioning.ComparableVersion
+import org.apache.maven.plugin.logging.Log
+import org.eclipse.xtend.lib.annotations.Accessors
+
+/**
+ * All entries of one dictionary for the same groupId:artifactId, pre-sorted by
+ * exact version, version-range, base-version (SNAPSHOT) and version-independent ('*') entries.
+ *
+ * An artifact has only a few versioned entries, so they are kept in a small array instead of
+ * maps; containers are only allocated when needed.
+ */
+class DictBucket {
+	@Accessors final String name;
+	@Accessors final String pattern;
+	DictItem[] versioned;
+	List<VersionInterval> ranges;
+	DictItem wildcard;
+	boolean duplicateWildcard;
+
+	new(String name) {
+		this(name, null);
+	}
+
+	/**
+	 * Bucket for a wildcard entry like <code>org.hibernate:*</code>
+	 */
+	new(String name, String pattern) {
+		this.name = name;
+		this.pattern = pattern;
+	}
+
+	/**
+	 * Adds an entry; later entries override earlier ones with the same version
+	 */
+	def void add(DictItem item) {
+		if (item.version == null || item.version.equals("*")) {
+			if (wildcard != null)
+				duplicateWildcard = true
+			else
+				wildcard = item;
+		} else if (VersionInterval.isRange(item.version)) {
+			if (ranges == null)
+				ranges = new ArrayList<VersionInterval>(2);
+			for (VersionInterval interval : VersionInterval.of(item))
+				addRange(interval);
+		} else {
+			val int n = if(versioned == null) 0 else versioned.length;
+			val DictItem[] items = newArrayOfSize(n + 1);
+			if (n > 0)
+				System.arraycopy(versioned, 0, items, 0, n);
+			items.set(n, item);
+			versioned = items;
+		}
+	}
+
+	/**
+	 * Inserts the interval sorted by lower bound; ranges must not overlap
+	 */
+	def private void addRange(VersionInterval interval) {
+		var int pos = ranges.size;
+		while (pos > 0 && ranges.get(pos - 1).compareLower(interval) > 0)
+			pos = pos - 1;
+		if ((pos > 0 && ranges.get(pos - 1).overlaps(interval)) || (pos < ranges.size && interval.overlaps(ranges.get(pos))))
+			throw new IllegalArgumentException('''«name»: Overlapping version ranges in <«interval.item»>''');
+		ranges.add(pos, interval);
+	}
+
+	/**
+	 * Finds the range containing the version by binary search over the lower bounds
+	 */
+	def private DictItem findRange(String version) {
+		val ComparableVersion v = VersionInterval.parseVersion(version);
+		var int low = 0;
+		var int high = ranges.size - 1;
+		var int found = -1;
+		while (low <= high) {
+			val int mid = (low + high) / 2;
+			if (ranges.get(mid).isAboveLower(v)) {
+				found = mid;
+				low = mid + 1;
+			} else
+				high = mid - 1;
+		}
+		if (found >= 0 && ranges.get(found).isBelowUpper(v))
+			return ranges.get(found).item;
+		return null;
+	}
+
+	/**
+	 * Finds the most specific entry for the version: exact match, then version-range, then base-version match, then '*'
+	 */
+	def DictItem find(Log logger, String version) {
+		if (version != null) {
+			// the last entry wins
+			var DictItem item = null;
+			if (versioned != null) {
+				for (var int i = versioned.length - 1; i >= 0 && item == null; i--)
+					if (version.equals(versioned.get(i).version))
+						item = versioned.get(i);
+			}
+			if (item != null) {
+				if (logger.debugEnabled)
+					logger.debug('''«name»: Found matching item <«item»>''');
+				return item;
+			}
+			if (ranges != null) {
+				item = findRange(version);
+				if (item != null) {
+					if (logger.debugEnabled)
+						logger.debug('''«name»: Found matching range-item <«item»>''');
+					return item;
+				}
+			}
+			if (versioned != null) {
+				val String baseVersion = MavenGAV.extractBaseVersion(version);
+				for (var int i = versioned.length - 1; i >= 0 && item == null; i--)
+					if (baseVersion.equals(versioned.get(i).baseVersion))
+						item = versioned.get(i);
+			}
+			if (item != null) {
+				if (logger.debugEnabled)
+					logger.debug('''«name»: Found matching snapshot-item <«item»>''');
+				return item;
+			}
+		}
+		if (duplicateWildcard)
+			throw new RuntimeException("Duplicate:" + wildcard);
+		return wildcard;
+	}
+}
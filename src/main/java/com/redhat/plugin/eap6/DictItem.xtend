@@ -18,29 +18,45 @@
 package com.redhat.plugin.eap6
 
 import org.eclipse.xtend.lib.annotations.Accessors
-import org.eclipse.xtend.lib.annotations.Delegate
 
 /**
- * Mapping-Entry from Maven-coordinates g:a:v to an module-name
+ * Mapping-Entry from Maven-coordinates g:a:v to an module-name; the module-name is interned
  */
-class DictItem implements GAV{
+class DictItem extends MavenGAV {
 	@Accessors final String moduleName;
-	@Delegate GAV gav;
 
 	public new(String groupId, String artifactId, String version, String moduleName) {
-		this.gav=new MavenGAV(groupId,artifactId,version);
-		this.moduleName = moduleName;
+		super(groupId, artifactId, version);
+		this.moduleName = intern(moduleName);
 	}
 
-	override public String toString() {
+	/**
+	 * Is this a wildcard entry like <code>org.hibernate:*</code> or <code>org.jboss.resteasy:resteasy-*</code>?
+	 */
+	def boolean isPattern() {
+		return groupId.endsWith("*") || artifactId.endsWith("*");
+	}
 
-		val StringBuffer buf = new StringBuffer();
-		buf.append('''«gav.groupId»:«gav.artifactId»''');
-		if (gav.version != null)
-			buf.append(':').append(gav.version);
-		buf.append('=');
-		if (moduleName != null)
-			buf.append(moduleName);
-		return buf.toString();
+	/**
+	 * The literal part of a wildcard entry, matched against the start of "groupId:artifactId"
+	 */
+	def String getPatternPrefix() {
+		if (groupId.endsWith("*"))
+			return groupId.substring(0, groupId.length - 1);
+		return groupId + ':' + artifactId.substring(0, artifactId.length - 1);
+	}
+
+	override public String toString() {
+		if (string == null) {
+			val StringBuilder buf = new StringBuilder();
+			buf.append(groupId).append(':').append(artifactId);
+			if (version != null)
+				buf.append(':').append(version);
+			buf.append('=');
+			if (moduleName != null)
+				buf.append(moduleName);
+			string = buf.toString();
+		}
+		return string;
 	}
 }
@@ -0,0 +1,88 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.redhat.plugin.eap6
+
+import java.util.ArrayList
+import java.util.Arrays
+import java.util.List
+
+/**
+ * Prefix trie over "groupId:artifactId" for wildcard entries like <code>org.hibernate:*</code>
+ * or <code>org.jboss.resteasy:resteasy-*</code>; matching costs O(length of key)
+ */
+class DictTrie {
+	char[] labels = newCharArrayOfSize(0);
+	DictTrie[] children = newArrayOfSize(0);
+	DictBucket bucket;
+
+	/**
+	 * Adds a wildcard entry for all keys starting with prefix
+	 */
+	def void add(String name, String prefix, DictItem item) {
+		var DictTrie node = this;
+		for (i : 0 ..< prefix.length)
+			node = node.child(prefix.charAt(i), true);
+		if (node.bucket == null)
+			node.bucket = new DictBucket(name, prefix + '*');
+		node.bucket.add(item);
+	}
+
+	/**
+	 * Returns the buckets of all wildcard entries matching the key, the longest prefix first
+	 */
+	def List<DictBucket> find(String key) {
+		val List<DictBucket> result = new ArrayList<DictBucket>();
+		var DictTrie node = this;
+		var int i = 0;
+		while (node != null) {
+			if (node.bucket != null)
+				result.add(0, node.bucket);
+			if (i < key.length) {
+				node = node.child(key.charAt(i), false);
+				i = i + 1;
+			} else
+				node = null;
+		}
+		return result;
+	}
+
+	def boolean isEmpty() {
+		return labels.length == 0 && bucket == null;
+	}
+
+	def private DictTrie child(char c, boolean create) {
+		val int index = Arrays.binarySearch(labels, c);
+		if (index >= 0)
+			return children.get(index);
+		if (!create)
+			return null;
+		val int pos = -index - 1;
+		val char[] newLabels = newCharArrayOfSize(labels.length + 1);
+		val DictTrie[] newChildren = newArrayOfSize(labels.length + 1);
+		System.arraycopy(labels, 0, newLabels, 0, pos);
+		System.arraycopy(children, 0, newChildren, 0, pos);
+		System.arraycopy(labels, pos, newLabels, pos + 1, labels.length - pos);
+		System.arraycopy(children, pos, newChildren, pos + 1, labels.length - pos);
+		val DictTrie node = new DictTrie();
+		newLabels.set(pos, c);
+		newChildren.set(pos, node);
+		labels = newLabels;
+		children = newChildren;
+		return node;
+	}
+}
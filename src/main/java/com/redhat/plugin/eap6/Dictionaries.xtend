@@ -1,7 +1,6 @@
 package com.redhat.plugin.eap6
 
 import java.util.List
-import org.eclipse.xtend.lib.annotations.Accessors
 import java.util.ArrayList
 import java.io.FileReader
 import java.io.File
@@ -10,33 +9,111 @@ import java.io.IOException
 import java.text.ParseException
 import java.io.InputStreamReader
 import org.apache.maven.plugin.logging.Log
+import java.util.Collections
+import java.util.Map
+import java.util.concurrent.ConcurrentHashMap
 
 class Dictionaries {
-	@Accessors final private List<Dictionary> dictionaries = new ArrayList<Dictionary>()
+	final private List<Dictionary> dictionaries = new ArrayList<Dictionary>()
+
+	/**
+	 * Merged view groupId:artifactId -> buckets of all dictionaries, in lookup-order
+	 */
+	final private Map<String, List<DictBucket>> merged = new ConcurrentHashMap<String, List<DictBucket>>()
+
+	/**
+	 * The loaded dictionaries in the order they were added; changes go through addDictionary, which invalidates the merged view
+	 */
+	def public List<Dictionary> getDictionaries() {
+		return Collections.unmodifiableList(dictionaries);
+	}
+
+	/**
+	 * Identifies the loaded dictionaries for caches shared by executions; created once and replaced when a dictionary is added
+	 */
+	volatile List<Dictionary> cacheKey
+
+	def public List<Dictionary> getCacheKey() {
+		var List<Dictionary> key = cacheKey;
+		if (key == null) {
+			key = Collections.unmodifiableList(new ArrayList<Dictionary>(dictionaries));
+			cacheKey = key;
+		}
+		return key;
+	}
 
 	def public void addDictionary(Dictionary dict) {
 		dictionaries.add(dict);
+		merged.clear();
+		cacheKey = null;
 	}
 
 	def public void addDictionary(File f) throws IOException, ParseException {
 		if(f==null || !f.exists || !f.canRead) return;
-		val FileReader reader = new FileReader(f);
-		addDictionary(new Dictionary(f.name, DictItemBuilder.parse(reader)));
+		addDictionary(readDictionary(f));
 	}
 
 	def public void addDictionary(InputStream stream) throws IOException, ParseException {
-		addDictionary(new Dictionary(DictItemBuilder.parse(new InputStreamReader(stream))));
+		addDictionary(readDictionary(stream));
 	}
 
-	def public DictItem find(Log logger, String groupId, String artifactId, String version) {
+	/**
+	 * Reads a text or compiled dictionary file
+	 */
+	def public static Dictionary readDictionary(File f) throws IOException, ParseException {
+		if (CompiledDictionary.isCompiled(f))
+			return new CompiledDictionary(f);
+		val FileReader reader = new FileReader(f);
+		try {
+			return new Dictionary(f.name, DictItemBuilder.parse(f.path, reader));
+		} finally {
+			reader.close();
+		}
+	}
+
+	def public static Dictionary readDictionary(InputStream stream) throws IOException, ParseException {
+		return readDictionary(null, stream);
+	}
+
+	/**
+	 * Reads a text dictionary; the name is used in error messages
+	 */
+	def public static Dictionary readDictionary(String name, InputStream stream) throws IOException, ParseException {
+		return new Dictionary(DictItemBuilder.parse(name, new InputStreamReader(stream)));
+	}
 
-		// reverse lookup through all readed dictionaries
-		for (var int n = dictionaries.size() - 1; n >= 0; n--) {
-			val Dictionary dict = dictionaries.get(n);
-			val DictItem item = dict.find(logger, groupId, artifactId, version);
+	def public DictItem find(Log logger, String groupId, String artifactId, String version) {
+		for (DictBucket bucket : getBuckets(groupId, artifactId)) {
+			val DictItem item = bucket.find(logger, version);
 			if (item != null)
 				return item;
 		}
 		return null;
 	}
+
+	/**
+	 * Returns the buckets of all dictionaries for groupId:artifactId in precedence-order:
+	 * exact entries before wildcard entries, longer wildcard prefixes before shorter ones,
+	 * and the last added dictionary first
+	 */
+	def private List<DictBucket> getBuckets(String groupId, String artifactId) {
+		val String key = Dictionary.key(groupId, artifactId);
+		var List<DictBucket> buckets = merged.get(key);
+		if (buckets == null) {
+			buckets = new ArrayList<DictBucket>();
+			val List<DictBucket> patternBuckets = new ArrayList<DictBucket>();
+			// reverse lookup through all readed dictionaries
+			for (var int n = dictionaries.size() - 1; n >= 0; n--) {
+				val DictBucket bucket = dictionaries.get(n).getBucket(groupId, artifactId);
+				if (bucket != null)
+					buckets.add(bucket);
+				patternBuckets.addAll(dictionaries.get(n).getPatternBuckets(groupId, artifactId));
+			}
+			// stable sort keeps later dictionaries first for the same prefix length
+			Collections.sort(patternBuckets, [b1, b2|b2.pattern.length - b1.pattern.length]);
+			buckets.addAll(patternBuckets);
+			merged.put(key, buckets);
+		}
+		return buckets;
+	}
 }
@@ -18,7 +18,10 @@
 package com.redhat.plugin.eap6
 
 import java.util.ArrayList
+import java.util.Collections
+import java.util.HashMap
 import java.util.List
+import java.util.Map
 import org.apache.maven.plugin.logging.Log
 import org.eclipse.xtend.lib.annotations.Accessors
 
@@ -28,11 +31,24 @@ import org.eclipse.xtend.lib.annotations.Accessors
 class Dictionary {
 	@Accessors final private List<DictItem> dictionary = new ArrayList<DictItem>();
 	@Accessors final private String name;
+	final private Map<String, DictBucket> index = new HashMap<String, DictBucket>();
+	final private DictTrie patterns = new DictTrie();
 
 	new(String name, List<DictItem> dict) {
 		this.name=name;
 		for (DictItem item : dict) {
 			dictionary.add(item);
+			if (item.pattern) {
+				addPattern(item);
+			} else {
+				val key = key(item.groupId, item.artifactId);
+				var DictBucket bucket = index.get(key);
+				if (bucket == null) {
+					bucket = new DictBucket(name);
+					index.put(key, bucket);
+				}
+				bucket.add(item);
+			}
 		}
 	}
 
@@ -40,6 +56,30 @@ class Dictionary {
 		this(null,dict)
 	}
 
+	def static String key(String groupId, String artifactId) {
+		return groupId + ':' + artifactId;
+	}
+
+	/**
+	 * Returns all entries for groupId:artifactId, or null
+	 */
+	def DictBucket getBucket(String groupId, String artifactId) {
+		return index.get(key(groupId, artifactId));
+	}
+
+	/**
+	 * Returns the entries of all wildcard entries matching groupId:artifactId, the most specific first
+	 */
+	def List<DictBucket> getPatternBuckets(String groupId, String artifactId) {
+		if (patterns.empty)
+			return Collections.emptyList();
+		return patterns.find(key(groupId, artifactId));
+	}
+
+	def protected void addPattern(DictItem item) {
+		patterns.add(name, item.patternPrefix, item);
+	}
+
 	def DictItem find(Log logger, MavenGAV gav) {
 		return find(logger,gav.groupId,gav.artifactId,gav.version)
 	}
@@ -48,39 +88,17 @@ class Dictionary {
      * Finds the best matching artifact mapping
      */
 	def DictItem find(Log logger, String groupId, String artifactId, String version) {
-		var DictItem match = null;
-
-		//logger.info('''Look for <«groupId»:«artifactId»:«version»>''')
-		for (DictItem item : dictionary) {
-			if (item.groupId.equals(groupId) && item.artifactId.equals(artifactId)) {
-
-				// If there is a version matching this version, pick that
-				if (version.equals(item.version)) {
-					match = item;
-					logger.debug('''«name»: Found matching item <«item.toString()»>''');
-				} else {
-					if (item.version.equals("*")) { // Version is not important
-						if (match != null && match.version.equals("*")) {
-							throw new RuntimeException("Duplicate:" + match);
-						}
-						if (match == null)
-							match = item;
-					} else {
-
-						// deal with SNAPSHOT-versions
-						val itemBaseVersion = item.getBaseVersion()
-						val baseVersion = MavenGAV.extractBaseVersion(version)
-						//logger.info('''itemBase:<«itemBaseVersion»> base:<«baseVersion»>''')
-						if (baseVersion.equals(itemBaseVersion)) {
-							match = item;
-							logger.debug('''«name»: Found matching snapshot-item <«item.toString()»>''');
-						} else {
-							//item.logger.warn('''mismatching version <«item.version»:«version»>''')
-						}
-					}
-				}
-			}
+		val DictBucket bucket = getBucket(groupId, artifactId);
+		if (bucket != null) {
+			val DictItem item = bucket.find(logger, version);
+			if (item != null)
+				return item;
+		}
+		for (DictBucket patternBucket : getPatternBuckets(groupId, artifactId)) {
+			val DictItem item = patternBucket.find(logger, version);
+			if (item != null)
+				return item;
 		}
-		return match;
+		return null;
 	}
 }
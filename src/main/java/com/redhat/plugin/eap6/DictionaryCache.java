@@ -0,0 +1,211 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide cache of loaded dictionaries, shared by all mojo executions of a reactor and by later builds in the same JVM (e.g. a maven daemon).
+ *
+ * Files are keyed by canonical path; a cached dictionary is reused while size and last-modified time are unchanged, or when the content hash is unchanged
+ * after a touch. The least recently used dictionaries are evicted when the cache is full.
+ */
+public final class DictionaryCache {
+
+    static final int MAX_ENTRIES = 32;
+
+    private static final Map<String, CachedDictionary> cache = new LinkedHashMap<String, CachedDictionary>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, CachedDictionary> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private DictionaryCache() {
+    }
+
+    /**
+     * Returns the dictionary of the file, loading it if it is not cached or has changed
+     */
+    public static Dictionary get(final File file) throws IOException, ParseException {
+        final String key = file.getCanonicalPath();
+        final long size = file.length();
+        final long lastModified = file.lastModified();
+        CachedDictionary entry;
+        synchronized (cache) {
+            entry = cache.get(key);
+        }
+        if (entry != null && entry.size == size && entry.lastModified == lastModified) {
+            hits.incrementAndGet();
+            return entry.dictionary;
+        }
+        // the header of a compiled dictionary has a checksum of its content
+        final String hash = CompiledDictionary.isCompiled(file) ? "crc32:" + CompiledDictionary.storedChecksum(file) : hash(file);
+        if (entry != null && entry.hash.equals(hash)) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            entry = new CachedDictionary(Dictionaries.readDictionary(file), hash, size, lastModified);
+        }
+        synchronized (cache) {
+            cache.put(key, new CachedDictionary(entry.dictionary, hash, size, lastModified));
+        }
+        return entry.dictionary;
+    }
+
+    /**
+     * Returns the dictionaries of all files in the given order; several files are loaded concurrently
+     */
+    public static List<Dictionary> getAll(final List<File> files) throws IOException, ParseException {
+        final List<Dictionary> result = new ArrayList<Dictionary>(files.size());
+        if (files.size() < 2) {
+            for (final File file : files)
+                result.add(get(file));
+            return result;
+        }
+        final List<Future<Dictionary>> futures = new ArrayList<Future<Dictionary>>(files.size());
+        try {
+            for (final File file : files) {
+                futures.add(SharedForkJoinPool.get().submit(new Callable<Dictionary>() {
+                    @Override
+                    public Dictionary call() throws IOException, ParseException {
+                        return get(file);
+                    }
+                }));
+            }
+            for (final Future<Dictionary> future : futures)
+                result.add(future.get());
+            return result;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading dictionaries", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof ParseException)
+                throw (ParseException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause);
+        } finally {
+            for (final Future<Dictionary> future : futures)
+                future.cancel(true);
+        }
+    }
+
+    /**
+     * Returns the dictionary of a classpath-resource, which is loaded once
+     */
+    public static Dictionary getResource(final String name) throws IOException, ParseException {
+        final String key = "classpath:" + name;
+        synchronized (cache) {
+            final CachedDictionary entry = cache.get(key);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return entry.dictionary;
+            }
+        }
+        misses.incrementAndGet();
+        final InputStream stream = DictionaryCache.class.getResourceAsStream(name);
+        if (stream == null)
+            throw new IOException("Resource " + name + " not found");
+        final Dictionary dictionary;
+        try {
+            dictionary = Dictionaries.readDictionary(name, stream);
+        } finally {
+            stream.close();
+        }
+        synchronized (cache) {
+            cache.put(key, new CachedDictionary(dictionary, "", -1, -1));
+        }
+        return dictionary;
+    }
+
+    public static void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+
+    public static String statistics() {
+        final int size;
+        synchronized (cache) {
+            size = cache.size();
+        }
+        return hits.get() + " hits, " + misses.get() + " misses, " + size + " cached dictionaries";
+    }
+
+    private static String hash(final File file) throws IOException {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            final byte[] buf = new byte[8192];
+            final InputStream in = new FileInputStream(file);
+            try {
+                int n;
+                while ((n = in.read(buf)) > 0)
+                    digest.update(buf, 0, n);
+            } finally {
+                in.close();
+            }
+            final StringBuilder sb = new StringBuilder();
+            for (final byte b : digest.digest())
+                sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class CachedDictionary {
+        final Dictionary dictionary;
+        final String hash;
+        final long size;
+        final long lastModified;
+
+        CachedDictionary(final Dictionary dictionary, final String hash, final long size, final long lastModified) {
+            this.dictionary = dictionary;
+            this.hash = hash;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.text.ParseException;
+
+/**
+ * Syntax error in a dictionary file, located by file, line and column
+ */
+public class DictionaryParseException extends ParseException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String fileName;
+    private final int line;
+    private final int column;
+
+    public DictionaryParseException(final String fileName, final int line, final int column, final String message) {
+        super((fileName != null ? fileName : "<dictionary>") + ":" + line + ":" + column + ": " + message, column - 1);
+        this.fileName = fileName;
+        this.line = line;
+        this.column = column;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+}
@@ -0,0 +1,234 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException;
+import org.apache.maven.artifact.versioning.VersionRange;
+
+/**
+ * Single-pass parser for dictionary files with lines like <code>groupId:artifactId[:version]=module # comment</code>.
+ *
+ * The input is scanned char by char in a reused buffer; only the final values of an entry are copied into strings. Errors are reported as
+ * <code>file:line:column</code>.
+ */
+public class DictionaryParser {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int GROUP = 0;
+    private static final int ARTIFACT = 1;
+    private static final int VERSION = 2;
+    private static final int IGNORED = 3;
+    private static final int MODULE = 4;
+
+    private final String fileName;
+    private final Reader reader;
+
+    private char[] buf = new char[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private int lineStart;
+    private int line;
+    private boolean eof;
+
+    // start/end columns (0-based, end exclusive) of the fields of the current line
+    private final int[] starts = new int[MODULE + 1];
+    private final int[] ends = new int[MODULE + 1];
+
+    public DictionaryParser(final String fileName, final Reader reader) {
+        this.fileName = fileName;
+        this.reader = reader;
+    }
+
+    /**
+     * Parses all entries; the reader is not closed
+     */
+    public List<DictItem> parse() throws IOException, DictionaryParseException {
+        final List<DictItem> items = new ArrayList<DictItem>();
+        while (!eof || pos < limit) {
+            final DictItem item = parseLine();
+            if (item != null)
+                items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * Parses the next entry, skipping blank and comment lines; null at end of input
+     */
+    public DictItem next() throws IOException, DictionaryParseException {
+        while (!eof || pos < limit) {
+            final DictItem item = parseLine();
+            if (item != null)
+                return item;
+        }
+        return null;
+    }
+
+    private DictItem parseLine() throws IOException, DictionaryParseException {
+        lineStart = pos;
+        line++;
+        Arrays.fill(starts, -1);
+        Arrays.fill(ends, -1);
+        int field = GROUP;
+        int tokenStart = -1;
+        int tokenEnd = -1;
+        boolean comment = false;
+        boolean empty = true;
+        int c;
+        while ((c = read()) >= 0 && c != '\n' && c != '\r') {
+            if (comment)
+                continue;
+            final int column = pos - 1 - lineStart;
+            if (c == '#') {
+                comment = true;
+            } else if (c == ':' && field < MODULE) {
+                if (field == GROUP || field == ARTIFACT) {
+                    close(field, tokenStart, tokenEnd, column);
+                    field++;
+                } else {
+                    // further segments after the version are ignored
+                    close(field, tokenStart, tokenEnd, column);
+                    field = IGNORED;
+                }
+                tokenStart = -1;
+                empty = false;
+            } else if (c == '=' && field < MODULE) {
+                if (field == GROUP)
+                    throw error(column, "Expected ':' between groupId and artifactId");
+                close(field, tokenStart, tokenEnd, column);
+                field = MODULE;
+                tokenStart = -1;
+                empty = false;
+            } else if (c > ' ') {
+                if (tokenStart < 0)
+                    tokenStart = column;
+                tokenEnd = column + 1;
+                empty = false;
+            }
+        }
+        final int endColumn = pos - lineStart - (c >= 0 ? 1 : 0);
+        if (c == '\r' && peek() == '\n')
+            pos++;
+        if (empty)
+            return null;
+        if (field != MODULE)
+            throw error(endColumn, "Expected '='");
+        close(field, tokenStart, tokenEnd, endColumn);
+
+        if (starts[GROUP] == ends[GROUP])
+            throw error(starts[GROUP], "Missing groupId");
+        if (starts[ARTIFACT] == ends[ARTIFACT])
+            throw error(starts[ARTIFACT], "Missing artifactId");
+        if (starts[VERSION] >= 0 && starts[VERSION] == ends[VERSION])
+            throw error(starts[VERSION], "Missing version");
+        checkWildcards();
+
+        final String groupId = string(GROUP);
+        final String artifactId = string(ARTIFACT);
+        final String version = starts[VERSION] >= 0 ? string(VERSION) : "*";
+        final String module = starts[MODULE] == ends[MODULE] ? null : string(MODULE);
+        if (VersionInterval.isRange(version)) {
+            try {
+                VersionRange.createFromVersionSpec(version);
+            } catch (final InvalidVersionSpecificationException e) {
+                throw error(starts[VERSION], "Invalid version range: " + e.getMessage());
+            }
+        }
+        return new DictItem(groupId, artifactId, version, module);
+    }
+
+    /**
+     * Wildcards are only supported as suffix: org.hibernate:*, org.jboss.resteasy:resteasy-*, org.jboss.*:*
+     */
+    private void checkWildcards() throws DictionaryParseException {
+        final int artifactStar = indexOf(ARTIFACT, '*');
+        if (artifactStar >= 0 && artifactStar != ends[ARTIFACT] - 1)
+            throw error(artifactStar, "Wildcard '*' only allowed at the end of artifactId");
+        final int groupStar = indexOf(GROUP, '*');
+        if (groupStar < 0)
+            return;
+        if (groupStar != ends[GROUP] - 1)
+            throw error(groupStar, "Wildcard '*' only allowed at the end of groupId");
+        if (ends[ARTIFACT] - starts[ARTIFACT] != 1 || artifactStar < 0)
+            throw error(starts[ARTIFACT], "Wildcard groupId requires artifactId '*'");
+    }
+
+    private void close(final int field, final int tokenStart, final int tokenEnd, final int column) {
+        if (field == IGNORED)
+            return;
+        starts[field] = tokenStart < 0 ? column : tokenStart;
+        ends[field] = tokenStart < 0 ? column : tokenEnd;
+    }
+
+    private int indexOf(final int field, final char c) {
+        for (int i = starts[field]; i < ends[field]; i++)
+            if (buf[lineStart + i] == c)
+                return i;
+        return -1;
+    }
+
+    private String string(final int field) {
+        return new String(buf, lineStart + starts[field], ends[field] - starts[field]);
+    }
+
+    private DictionaryParseException error(final int column, final String message) {
+        return new DictionaryParseException(fileName, line, column + 1, message);
+    }
+
+    private int read() throws IOException {
+        if (pos >= limit && !fill())
+            return -1;
+        return buf[pos++];
+    }
+
+    private int peek() throws IOException {
+        if (pos >= limit && !fill())
+            return -1;
+        return buf[pos];
+    }
+
+    /**
+     * Reads more input; the current line is moved to the start of the buffer, which grows for very long lines
+     */
+    private boolean fill() throws IOException {
+        if (eof)
+            return false;
+        if (lineStart > 0) {
+            System.arraycopy(buf, lineStart, buf, 0, limit - lineStart);
+            pos -= lineStart;
+            limit -= lineStart;
+            lineStart = 0;
+        }
+        if (limit == buf.length)
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        final int n = reader.read(buf, limit, buf.length - limit);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+}
@@ -0,0 +1,286 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * SHA-1 digests of the jars of a local maven repository, used to identify module jars without pom.properties.
+ *
+ * The index is persisted as a text file with one jar per line: <code>sha1 size lastModified groupId:artifactId:version path</code>. An update only
+ * computes digests of jars that are new or changed since the last update; <code>.jar.sha1</code> files of the repository are used when present.
+ */
+public class DigestIndex {
+
+    private static final String HEADER = "# eap6 digest index 1";
+    private static final int MAP_CHUNK = 64 * 1024 * 1024;
+
+    // repository-relative path -> record, sorted for a stable file and a deterministic choice between equal jars
+    private final Map<String, JarDigest> byPath = new TreeMap<String, JarDigest>();
+    private Map<String, MavenGAV> bySha1;
+    private boolean modified;
+
+    /**
+     * Loads a persisted index; an empty index if the file does not exist
+     */
+    public static DigestIndex load(final File file) throws IOException {
+        final DigestIndex index = new DigestIndex();
+        if (!file.isFile())
+            return index;
+        final BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line = in.readLine();
+            if (!HEADER.equals(line))
+                return index;
+            while ((line = in.readLine()) != null) {
+                final String[] fields = line.split(" ", 5);
+                if (fields.length != 5)
+                    continue;
+                final String[] gav = fields[3].split(":");
+                if (gav.length != 3)
+                    continue;
+                index.byPath.put(fields[4],
+                        new JarDigest(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]), new MavenGAV(gav[0], gav[1], gav[2])));
+            }
+        } catch (final NumberFormatException e) {
+            index.byPath.clear();
+        } finally {
+            in.close();
+        }
+        return index;
+    }
+
+    public void save(final File file) throws IOException {
+        final File tmp = AtomicFiles.createTemp(file);
+        try {
+            final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8"));
+            try {
+                out.write(HEADER);
+                out.write('\n');
+                for (final Map.Entry<String, JarDigest> entry : byPath.entrySet()) {
+                    final JarDigest digest = entry.getValue();
+                    out.write(digest.sha1 + " " + digest.size + " " + digest.lastModified + " " + digest.gav.getGroupId() + ":"
+                            + digest.gav.getArtifactId() + ":" + digest.gav.getVersion() + " " + entry.getKey());
+                    out.write('\n');
+                }
+            } finally {
+                out.close();
+            }
+            AtomicFiles.replace(tmp, file);
+        } finally {
+            tmp.delete();
+        }
+        modified = false;
+    }
+
+    /**
+     * Has the index changed since it was loaded or saved?
+     */
+    public boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * Brings the index up to date with the repository: removed jars are dropped, digests are computed in parallel for new and changed jars only.
+     *
+     * @return the number of new or changed jars
+     */
+    public int update(final File repository, final Log logger, final int parallelism) throws IOException {
+        final Map<String, File> jars = new TreeMap<String, File>();
+        collect(repository, "", jars);
+        modified |= byPath.keySet().retainAll(jars.keySet());
+
+        final List<String> changed = new ArrayList<String>();
+        for (final Map.Entry<String, File> entry : jars.entrySet()) {
+            final JarDigest digest = byPath.get(entry.getKey());
+            if (digest == null || digest.size != entry.getValue().length() || digest.lastModified != entry.getValue().lastModified())
+                changed.add(entry.getKey());
+        }
+        final ForkJoinPool pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        try {
+            final List<Callable<JarDigest>> tasks = new ArrayList<Callable<JarDigest>>(changed.size());
+            for (final String path : changed) {
+                final File jar = jars.get(path);
+                tasks.add(new Callable<JarDigest>() {
+                    @Override
+                    public JarDigest call() throws IOException {
+                        final long size = jar.length();
+                        final long lastModified = jar.lastModified();
+                        String sha1 = readSha1File(new File(jar.getPath() + ".sha1"));
+                        if (sha1 == null)
+                            sha1 = sha1(jar);
+                        return new JarDigest(sha1, size, lastModified, toGav(path));
+                    }
+                });
+            }
+            final List<Future<JarDigest>> results = pool.invokeAll(tasks);
+            for (int i = 0; i < changed.size(); i++) {
+                try {
+                    byPath.put(changed.get(i), results.get(i).get());
+                } catch (final ExecutionException e) {
+                    logger.warn("Cannot compute digest of " + changed.get(i) + ": " + e.getCause().getMessage());
+                    byPath.remove(changed.get(i));
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while computing digests", e);
+        } finally {
+            pool.shutdown();
+        }
+        synchronized (this) {
+            bySha1 = null;
+        }
+        modified |= !changed.isEmpty();
+        logger.debug("Digest index: " + byPath.size() + " jars, " + changed.size() + " new or changed");
+        return changed.size();
+    }
+
+    /**
+     * Returns the coordinates of the jar with the given SHA-1, or null
+     */
+    public synchronized MavenGAV find(final String sha1) {
+        if (bySha1 == null) {
+            bySha1 = new HashMap<String, MavenGAV>();
+            for (final JarDigest digest : byPath.values())
+                if (!bySha1.containsKey(digest.sha1))
+                    bySha1.put(digest.sha1, digest.gav);
+        }
+        return bySha1.get(sha1);
+    }
+
+    public int size() {
+        return byPath.size();
+    }
+
+    /**
+     * Computes the SHA-1 of a file as lowercase hex, streaming through memory-mapped chunks
+     */
+    public static String sha1(final File file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            final long size = channel.size();
+            for (long position = 0; position < size; position += MAP_CHUNK) {
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_CHUNK, size - position));
+                digest.update(buffer);
+            }
+        } finally {
+            raf.close();
+        }
+        final StringBuilder sb = new StringBuilder(40);
+        for (final byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private static String readSha1File(final File file) throws IOException {
+        if (!file.isFile())
+            return null;
+        final BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "US-ASCII"));
+        try {
+            final String line = in.readLine();
+            if (line == null)
+                return null;
+            final String sha1 = line.trim().split("\\s+")[0].toLowerCase();
+            return sha1.matches("[0-9a-f]{40}") ? sha1 : null;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Collects the jars laid out as groupId-path/artifactId/version/artifactId-version[-classifier].jar, without sources and javadoc
+     */
+    private static void collect(final File directory, final String path, final Map<String, File> jars) {
+        final File[] files = directory.listFiles();
+        if (files == null)
+            return;
+        Arrays.sort(files);
+        for (final File file : files) {
+            final String name = file.getName();
+            if (file.isDirectory()) {
+                collect(file, path + name + "/", jars);
+            } else if (name.endsWith(".jar") && !name.endsWith("-sources.jar") && !name.endsWith("-javadoc.jar")) {
+                final MavenGAV gav = toGav(path + name);
+                if (gav != null && name.startsWith(gav.getArtifactId() + "-" + gav.getVersion()))
+                    jars.put(path + name, file);
+            }
+        }
+    }
+
+    private static MavenGAV toGav(final String path) {
+        final String[] segments = path.split("/");
+        if (segments.length < 4)
+            return null;
+        final StringBuilder groupId = new StringBuilder();
+        for (int i = 0; i < segments.length - 3; i++) {
+            if (i > 0)
+                groupId.append('.');
+            groupId.append(segments[i]);
+        }
+        return new MavenGAV(groupId.toString(), segments[segments.length - 3], segments[segments.length - 2]);
+    }
+
+    private static class JarDigest {
+        final String sha1;
+        final long size;
+        final long lastModified;
+        final MavenGAV gav;
+
+        JarDigest(final String sha1, final long size, final long lastModified, final MavenGAV gav) {
+            this.sha1 = sha1;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.gav = gav;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.redhat.plugin.eap6;
+
+import java.io.File;
+import java.io.FileReader;
+import java.util.List;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.sonatype.plexus.build.incremental.BuildContext;
+
+/**
+ * This plugin compiles dictionary files into a binary format, which is
+ * memory-mapped instead of parsed when used as a dictionary file of the
+ * build and build-module goals.
+ *
+ * Configuration items:
+ * <ul>
+ *
+ * <li>dictionaryFiles: The dictionary text files to compile. Each file is
+ * compiled into a file with the same base name and the extension
+ * <pre>.dictc</pre> in outputDirectory.</li>
+ *
+ * <li>outputDirectory: Directory for the compiled dictionaries. By default,
+ * <pre>${project.build.directory}/eap6-dictionaries</pre>.</li>
+ *
+ * </ul>
+ *
+ * Usage:
+ * <pre>
+ * &lt;plugin>
+ *   &lt;groupId>org.apache.maven.plugins&lt;/groupId>
+ *   &lt;artifactId>eap6-maven-plugin&lt;/artifactId>
+ *   &lt;executions>
+ *     &lt;execution>
+ *       &lt;goals>
+ *         &lt;goal>compile-dictionary&lt;/goal>
+ *       &lt;/goals>
+ *     &lt;/execution>
+ *   &lt;/executions>
+ *   &lt;configuration>
+ *     &lt;dictionaryFiles>&lt;dictionaryFile>src/main/etc/services.dict&lt;/dictionaryFile>&lt;/dictionaryFiles>
+ *   &lt;/configuration>
+ * &lt;/plugin>
+ * </pre>
+ *
+ * @since 1.0.1
+ */
+@Mojo(name = "compile-dictionary", defaultPhase = LifecyclePhase.GENERATE_RESOURCES, threadSafe = true)
+public class EAP6CompileDictionaryMojo extends AbstractMojo {
+
+    /**
+     * Gives the location of the dictionary files to compile
+     */
+    @Parameter(property = "dictionaryFiles", required = true)
+    protected List<File> dictionaryFiles;
+
+    /**
+     * Folder for the compiled dictionaries
+     */
+    @Parameter(defaultValue = "${project.build.directory}/eap6-dictionaries", required = true)
+    protected File outputDirectory;
+
+    // Injection of BuildContext for m2e-compatibility
+    @Component
+    protected BuildContext buildContext;
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (!outputDirectory.exists())
+            outputDirectory.mkdirs();
+        for (final File f : dictionaryFiles) {
+            if (f == null || !f.canRead())
+                throw new MojoFailureException("Cannot read dictionary file " + f);
+            final File destinationFile = new File(outputDirectory, FilenameUtils.getBaseName(f.getName()) + CompiledDictionary.EXTENSION);
+            if (destinationFile.lastModified() >= f.lastModified()) {
+                getLog().debug("Compiled dictionary <" + destinationFile + "> is up to date");
+                continue;
+            }
+            try {
+                final FileReader reader = new FileReader(f);
+                final List<DictItem> items;
+                try {
+                    items = DictItemBuilder.parse(f.getPath(), reader);
+                } finally {
+                    reader.close();
+                }
+                // written next to the destination and moved over it, so an interrupted build leaves no truncated dictionary
+                final File tmp = AtomicFiles.createTemp(destinationFile);
+                try {
+                    CompiledDictionary.write(items, tmp);
+                    AtomicFiles.replace(tmp, destinationFile);
+                } finally {
+                    tmp.delete();
+                }
+                getLog().info("Compiled dictionary <" + f.getPath() + "> with " + items.size() + " entries to <" + destinationFile.getPath() + ">");
+            } catch (final Exception e) {
+                throw new MojoFailureException("Cannot compile dictionary " + f, e);
+            }
+            if (buildContext != null)
+                buildContext.refresh(destinationFile);
+        }
+    }
+}
@@ -19,23 +19,26 @@
 package com.redhat.plugin.eap6;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -43,7 +46,6 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
-import org.codehaus.plexus.util.DirectoryScanner;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
@@ -157,114 +159,275 @@ public class EAP6DeploymentStructureMojo extends AbstractEAP6Mojo {
     @Parameter(defaultValue = "true", required = true)
     private boolean exportModules;
 
-    private static XPathFactory xpf;
-    private static XPathExpression xp_module;
-    private static XPathExpression xp_deployment;
-    private static XPathExpression xp_subdeployment;
-    private static XPathExpression xp_subdeployment_module;
-    private static XPathExpression xp_dependencies;
+    /**
+     * Number of threads reading the descriptors of the sub-deployments; 0 for the number of processors
+     *
+     * @since 1.0.1
+     */
+    @Parameter(property = "eap6.subDeploymentThreads", defaultValue = "0")
+    private int subDeploymentThreads;
+
+    /**
+     * Cache of the module dependencies of sub-deployment archives, so unchanged archives are not read again
+     *
+     * @since 1.0.1
+     */
+    @Parameter(property = "eap6.subDeploymentCacheFile", defaultValue = "${project.build.directory}/eap6-subdeployments.idx")
+    private File subDeploymentCacheFile;
+
+    /**
+     * Adds the war, ejb, jar and rar dependencies with a jboss-subdeployment.xml to the configured subDeployments
+     *
+     * @since 1.0.1
+     */
+    @Parameter(property = "eap6.discoverSubDeployments", defaultValue = "false")
+    private boolean discoverSubDeployments;
+
+    private static final String XP_MODULE = "/jboss-deployment-structure/deployment/dependencies/module";
+    private static final String XP_DEPLOYMENT = "/jboss-deployment-structure/deployment";
+    private static final String XP_SUBDEPLOYMENT = "/jboss-deployment-structure/sub-deployment";
+    private static final String XP_SUBDEPLOYMENT_MODULE = "/jboss-deployment-structure/sub-deployment/dependencies/module";
+    private static final String XP_DEPENDENCIES = "dependencies";
 
     private static final String JBOSS_DEPLOYMENT_STRUCTURE = "jboss-deployment-structure.xml";
-    private static final String JBOSS_SUBDEPLOYMENT = "jboss-subdeployment.xml";
+    private static final String JBOSS_SUBDEPLOYMENT = SubDeploymentReader.JBOSS_SUBDEPLOYMENT;
+    private static final List<String> SUBDEPLOYMENT_TYPES = Arrays.asList("war", "ejb", "jar", "rar");
 
-    static {
-        try {
-            xpf = XPathFactory.newInstance();
-            xp_module = xpf.newXPath().compile("/jboss-deployment-structure/deployment/dependencies/module");
-            xp_subdeployment = xpf.newXPath().compile("/jboss-deployment-structure/sub-deployment");
-            xp_subdeployment_module = xpf.newXPath().compile("/jboss-deployment-structure/sub-deployment/dependencies/module");
-            xp_deployment = xpf.newXPath().compile("/jboss-deployment-structure/deployment");
-            xp_dependencies = xpf.newXPath().compile("dependencies");
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+    @Override
+    protected void doExecute() throws MojoExecutionException, MojoFailureException {
+        if (generate) {
+            initializeDestinationDir();
+            if (isUpToDate(new File(destinationDir, isSubDeployment ? JBOSS_SUBDEPLOYMENT : JBOSS_DEPLOYMENT_STRUCTURE), JBOSS_DEPLOYMENT_STRUCTURE)) {
+                generateJandexIndex();
+                addResourceDir(destinationDir);
+                return;
+            }
         }
-    }
-
-    public void execute() throws MojoExecutionException, MojoFailureException {
         initializeDictionaries();
         // Are we to generate the file?
         if (generate) {
 
             // First gather any subdeployments
-            if (subDeployments != null) {
-                getLog().info("Sub deployments:" + subDeployments);
-                for (SubDeployment sd : subDeployments) {
-                    Artifact artifact = findArtifact(sd.getGroupId(), sd.getArtifactId());
-                    if (artifact == null)
-                        throw new MojoExecutionException("Cannot find file for artifact " + sd);
-                    getLog().debug("Sub deployment artifact:" + artifact + " file:" + artifact.getFile());
-                    try {
-                        final File artifactFile = artifact.getFile();
-                        if (artifactFile != null) {
-                            sd.setName(artifactFile.getName());
-                            if (artifactFile.canRead()) {
-                                Document doc = getDeploymentStructure(artifactFile);
-                                if (doc == null)
-                                    throw new MojoExecutionException("No deployment structure in " + artifact
-                                            + ", add eap6 plugin to that project to generate deployment structure");
-                                sd.setDocument(doc);
-                            } else {
-                                getLog().warn("Can not read artifact-file <" + artifactFile.getAbsolutePath() + ">");
-                            }
-                        } else {
-                            getLog().warn("Can not resolve artifact-file for artifact <" + artifact.toString() + ">");
-                        }
-                    } catch (Exception e) {
-                        throw new MojoExecutionException(e.toString());
-                    }
+            List<SubDeployment> subdeployments = new ArrayList<SubDeployment>();
+            if (subDeployments != null)
+                subdeployments.addAll(subDeployments);
+            if (!subdeployments.isEmpty() || discoverSubDeployments) {
+                SubDeploymentCache cache = loadSubDeploymentCache();
+                if (!subdeployments.isEmpty()) {
+                    getLog().info("Sub deployments:" + subdeployments);
+                    readSubDeployments(subdeployments, cache);
                 }
+                if (discoverSubDeployments)
+                    subdeployments.addAll(discoverSubDeployments(subdeployments, cache));
+                saveSubDeploymentCache(cache);
             }
 
-            // Is there a skeleton file?
-            Document doc = initializeSkeletonFile(JBOSS_DEPLOYMENT_STRUCTURE);
+            if (streamingXml) {
+                StreamingDescriptorWriter writer = new StreamingDescriptorWriter("jboss-deployment-structure", encoding);
+                buildDeploymentStructure(writer, moduleDependencies, subdeployments);
+                writeXmlFile(writer, JBOSS_DEPLOYMENT_STRUCTURE, destinationDir, isSubDeployment ? JBOSS_SUBDEPLOYMENT : JBOSS_DEPLOYMENT_STRUCTURE);
+                validateModuleDependencies(writer.getModules());
+                saveInputFingerprint();
+                generateJandexIndex();
+                addResourceDir(destinationDir);
+                printResolutionStatistics();
+                return;
+            }
 
-            try {
-                buildDeploymentStructure(doc, artifactsAsModules, subDeployments);
-
-                // Check if there are any modules that are possibly unnecessary
-                NodeList nl = (NodeList) xp_module.evaluate(doc, XPathConstants.NODESET);
-                int n = nl.getLength();
-                printNodeList(nl);
-                for (int i = 0; i < n; i++) {
-                    String mname = ((Element) nl.item(i)).getAttribute("name");
-                    // If this module is not in dependencies, warn
-                    Artifact a = reverseMap.get(mname);
-                    if (a == null)
-                        getLog().warn("No dependencies to module " + mname);
-                    else {
-                        if (!a.getScope().equals(Artifact.SCOPE_PROVIDED))
-                            getLog().warn("Module does not appear with provided scope in POM:" + mname);
-                    }
-                }
-                NodeList nlSub = (NodeList) xp_subdeployment.evaluate(doc, XPathConstants.NODESET);
-                printNodeList(nlSub);
-                int nSub = nlSub.getLength();
-                for (int i = 0; i < nSub; i++) {
-                    String subDepl = ((Element) nlSub.item(i)).getTagName();// Attribute("name");
-                    getLog().debug(subDepl);
-                    NodeList nlSubModules = (NodeList) xp_subdeployment_module.evaluate(doc, XPathConstants.NODESET);
-                    printNodeList(nlSubModules);
+            generateDeploymentStructure(subdeployments);
+            saveInputFingerprint();
+            generateJandexIndex();
+            addResourceDir(destinationDir);
+        }
+        printResolutionStatistics();
+    }
+
+    /**
+     * Merges the module dependencies into the skeleton and writes the descriptor to destinationDir
+     */
+    protected void generateDeploymentStructure(List<SubDeployment> subdeployments) throws MojoFailureException {
+        // Is there a skeleton file?
+        Document doc = initializeSkeletonFile(JBOSS_DEPLOYMENT_STRUCTURE);
+
+        try {
+            buildDeploymentStructure(doc, moduleDependencies, subdeployments);
+
+            // Check if there are any modules that are possibly unnecessary
+            NodeList nl = (NodeList) XmlSupport.xpath(XP_MODULE).evaluate(doc, XPathConstants.NODESET);
+            printNodeList(nl);
+            validateModuleDependencies(nl);
+            NodeList nlSub = (NodeList) XmlSupport.xpath(XP_SUBDEPLOYMENT).evaluate(doc, XPathConstants.NODESET);
+            printNodeList(nlSub);
+            int nSub = nlSub.getLength();
+            for (int i = 0; i < nSub; i++) {
+                String subDepl = ((Element) nlSub.item(i)).getTagName();// Attribute("name");
+                getLog().debug(subDepl);
+                NodeList nlSubModules = (NodeList) XmlSupport.xpath(XP_SUBDEPLOYMENT_MODULE).evaluate(doc, XPathConstants.NODESET);
+                printNodeList(nlSubModules);
+            }
+
+        } catch (Exception e) {
+            throw new MojoFailureException("Cannot process XML", e);
+        }
+
+        // String xml = getStringFromDocument(doc);
+        writeXmlFile(doc, destinationDir, isSubDeployment ? JBOSS_SUBDEPLOYMENT : JBOSS_DEPLOYMENT_STRUCTURE);
+    }
+
+    /**
+     * Determines destinationDir from the packaging if not configured, and creates it
+     */
+    private void initializeDestinationDir() {
+        if (destinationDir == null) {
+            if (project.getPackaging().equalsIgnoreCase("war")) {
+                File f = new File(project.getBuild().getDirectory(), project.getBuild().getFinalName());
+                f.mkdir();
+                destinationDir = new File(f, "WEB-INF");
+            } else if (project.getPackaging().equalsIgnoreCase("ear"))
+                destinationDir = new File(new File(project.getBuild().getDirectory(), project.getBuild().getFinalName()), "META-INF");
+            else
+                destinationDir = new File(project.getBuild().getOutputDirectory(), "META-INF");
+        }
+        if (!destinationDir.exists())
+            destinationDir.mkdirs();
+    }
+
+    @Override
+    protected void addInputs(InputFingerprint fingerprint) {
+        fingerprint.add("isSubDeployment", isSubDeployment);
+        fingerprint.add("defaultSlot", defaultSlot);
+        fingerprint.add("exportModules", exportModules);
+        fingerprint.add("subDeployments", subDeployments);
+        fingerprint.add("discoverSubDeployments", discoverSubDeployments);
+    }
+
+    /**
+     * Reads the descriptors of the configured sub-deployments and sets their names and module dependencies in the given order. The first failing
+     * sub-deployment in that order is reported.
+     */
+    private void readSubDeployments(List<SubDeployment> subdeployments, SubDeploymentCache cache) throws MojoExecutionException {
+        final List<File> files = new ArrayList<File>(subdeployments.size());
+        for (SubDeployment sd : subdeployments) {
+            Artifact artifact = findArtifact(sd.getGroupId(), sd.getArtifactId());
+            if (artifact == null)
+                throw new MojoExecutionException("Cannot find file for artifact " + sd);
+            getLog().debug("Sub deployment artifact:" + artifact + " file:" + artifact.getFile());
+            final File artifactFile = artifact.getFile();
+            if (artifactFile == null) {
+                getLog().warn("Can not resolve artifact-file for artifact <" + artifact.toString() + ">");
+                files.add(null);
+            } else {
+                sd.setName(artifactFile.getName());
+                if (artifactFile.canRead()) {
+                    files.add(artifactFile);
+                } else {
+                    getLog().warn("Can not read artifact-file <" + artifactFile.getAbsolutePath() + ">");
+                    files.add(null);
                 }
+            }
+        }
+        final List<List<ModuleDependency>> modules = readModules(files, subdeployments, cache);
+        for (int i = 0; i < files.size(); i++) {
+            if (files.get(i) == null)
+                continue;
+            if (modules.get(i) == null)
+                throw new MojoExecutionException("No deployment structure in " + subdeployments.get(i) + " (" + files.get(i)
+                        + "), add eap6 plugin to that project to generate deployment structure");
+            subdeployments.get(i).setModules(modules.get(i));
+        }
+    }
 
-            } catch (Exception e) {
-                throw new MojoFailureException("Cannot process XML", e);
+    /**
+     * Returns the war, ejb, jar and rar dependencies packaged into the deployment which have a jboss-subdeployment.xml and are not configured
+     */
+    private List<SubDeployment> discoverSubDeployments(List<SubDeployment> configured, SubDeploymentCache cache) throws MojoExecutionException {
+        final Set<String> known = new HashSet<String>();
+        for (SubDeployment sd : configured)
+            known.add(sd.getGroupId() + ":" + sd.getArtifactId());
+        final List<SubDeployment> candidates = new ArrayList<SubDeployment>();
+        final List<File> files = new ArrayList<File>();
+        for (Artifact artifact : project.getArtifacts()) {
+            if (!SUBDEPLOYMENT_TYPES.contains(artifact.getType()) || known.contains(artifact.getGroupId() + ":" + artifact.getArtifactId()))
+                continue;
+            if (!Artifact.SCOPE_COMPILE.equals(artifact.getScope()) && !Artifact.SCOPE_RUNTIME.equals(artifact.getScope()))
+                continue;
+            final File artifactFile = artifact.getFile();
+            if (artifactFile == null || !artifactFile.canRead())
+                continue;
+            SubDeployment sd = new SubDeployment();
+            sd.setGroupId(artifact.getGroupId());
+            sd.setArtifactId(artifact.getArtifactId());
+            sd.setName(artifactFile.getName());
+            candidates.add(sd);
+            files.add(artifactFile);
+        }
+        final List<List<ModuleDependency>> modules = readModules(files, candidates, cache);
+        final List<SubDeployment> result = new ArrayList<SubDeployment>();
+        for (int i = 0; i < candidates.size(); i++) {
+            if (modules.get(i) != null) {
+                candidates.get(i).setModules(modules.get(i));
+                result.add(candidates.get(i));
             }
+        }
+        getLog().info("Discovered sub deployments: " + result + " (" + candidates.size() + " dependencies probed)");
+        return result;
+    }
 
-            if (destinationDir == null) {
-                if (project.getPackaging().equalsIgnoreCase("war")) {
-                    File f = new File(project.getBuild().getDirectory(), project.getBuild().getFinalName());
-                    f.mkdir();
-                    destinationDir = new File(f, "WEB-INF");
-                } else if (project.getPackaging().equalsIgnoreCase("ear"))
-                    destinationDir = new File(new File(project.getBuild().getDirectory(), project.getBuild().getFinalName()), "META-INF");
-                else
-                    destinationDir = new File(project.getBuild().getOutputDirectory(), "META-INF");
+    /**
+     * Reads the module dependencies of the descriptors of the files concurrently; null for a file without descriptor or a null file. The first
+     * failing file in the given order is reported with its sub-deployment.
+     */
+    private List<List<ModuleDependency>> readModules(List<File> files, List<SubDeployment> subdeployments, final SubDeploymentCache cache)
+            throws MojoExecutionException {
+        final SubDeploymentReader reader = new SubDeploymentReader(getLog(), encoding, verbose);
+        final List<List<ModuleDependency>> result = new ArrayList<List<ModuleDependency>>(files.size());
+        int threads = subDeploymentThreads > 0 ? subDeploymentThreads : Runtime.getRuntime().availableProcessors();
+        threads = Math.max(1, Math.min(threads, files.size()));
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<List<ModuleDependency>>> futures = new ArrayList<Future<List<ModuleDependency>>>(files.size());
+            for (final File file : files) {
+                futures.add(file == null ? null : executor.submit(new Callable<List<ModuleDependency>>() {
+                    @Override
+                    public List<ModuleDependency> call() throws Exception {
+                        return cache.getModules(file, reader);
+                    }
+                }));
             }
-            if (!destinationDir.exists())
-                destinationDir.mkdirs();
-            // String xml = getStringFromDocument(doc);
-            writeXmlFile(doc, destinationDir, isSubDeployment ? JBOSS_SUBDEPLOYMENT : JBOSS_DEPLOYMENT_STRUCTURE);
-            addResourceDir(destinationDir);
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    result.add(futures.get(i) == null ? null : futures.get(i).get());
+                } catch (ExecutionException e) {
+                    throw new MojoExecutionException("Cannot read deployment structure of " + subdeployments.get(i) + " from " + files.get(i) + ": "
+                            + e.getCause(), e.getCause());
+                }
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while reading sub deployments", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void saveSubDeploymentCache(SubDeploymentCache cache) {
+        getLog().info(cache.getHits() + " of " + cache.getLookups() + " sub-deployment archives from cache <" + subDeploymentCacheFile + ">");
+        if (cache.isModified()) {
+            try {
+                cache.save(subDeploymentCacheFile);
+            } catch (IOException e) {
+                getLog().warn("Cannot write sub-deployment cache <" + subDeploymentCacheFile + ">: " + e);
+            }
+        }
+    }
+
+    private SubDeploymentCache loadSubDeploymentCache() {
+        try {
+            return SubDeploymentCache.load(subDeploymentCacheFile);
+        } catch (IOException e) {
+            getLog().warn("Cannot read sub-deployment cache <" + subDeploymentCacheFile + ">: " + e);
+            return new SubDeploymentCache();
         }
     }
 
@@ -284,49 +447,43 @@ public class EAP6DeploymentStructureMojo extends AbstractEAP6Mojo {
         if (!root.getTagName().equals("jboss-deployment-structure"))
             throw new MojoFailureException("Root element is not jboss-deployment-structure");
 
-        Element deployment = (Element) xp_deployment.evaluate(doc, XPathConstants.NODE);
+        Element deployment = (Element) XmlSupport.xpath(XP_DEPLOYMENT).evaluate(doc, XPathConstants.NODE);
         if (deployment == null) {
             deployment = doc.createElement("deployment");
             root.insertBefore(deployment, root.getFirstChild());
         }
 
-        Element depDependencies = (Element) xp_dependencies.evaluate(deployment, XPathConstants.NODE);
+        Element depDependencies = (Element) XmlSupport.xpath(XP_DEPENDENCIES).evaluate(deployment, XPathConstants.NODE);
         if (depDependencies == null) {
             depDependencies = doc.createElement("dependencies");
             deployment.appendChild(depDependencies);
         }
 
-        Collection<String> mods = moduleMap.values();
+        Collection<String> mods = pruneModules(moduleMap.values(), Collections.<String> emptyList(), defaultSlot, "deployment");
         getLog().debug("From project-dependencies" + mods);
-        fillModuleEntries(doc, depDependencies, mods);
+        final boolean pathFilters = usePathFilters(subdeployments);
+        fillModuleEntries(doc, depDependencies, mods, pathFilters);
         getLog().debug("Element <" + depDependencies.getTagName() + ">: " + depDependencies.getChildNodes().getLength() + " elements");
 
         if (subdeployments != null && !subdeployments.isEmpty()) {
+            Map<String, Element> subElements = ModuleElements.children(root, "sub-deployment", "name");
+            Set<String> deploymentModules = new HashSet<String>(moduleMap.values());
             for (SubDeployment sd : subdeployments) {
-                XPathExpression xp = xpf.newXPath().compile("/jboss-deployment-structure/sub-deployment [@name='" + sd.getName() + "']");
-                Element subEl = (Element) xp.evaluate(doc, XPathConstants.NODE);
+                Element subEl = subElements.get(sd.getName());
                 if (subEl == null) {
                     getLog().debug("Creating sub-deployment-section for <" + sd.getName() + ">");
                     subEl = doc.createElement("sub-deployment");
                     root.appendChild(subEl);
                     subEl.setAttribute("name", sd.getName());
+                    subElements.put(sd.getName(), subEl);
                 }
-                Element subDependencies = (Element) xp_dependencies.evaluate(subEl, XPathConstants.NODE);
+                Element subDependencies = (Element) XmlSupport.xpath(XP_DEPENDENCIES).evaluate(subEl, XPathConstants.NODE);
                 if (subDependencies == null) {
                     subDependencies = doc.createElement("dependencies");
                     subEl.appendChild(subDependencies);
                 }
-                Set<String> modules = new HashSet<String>();
-                xp = xpf.newXPath().compile("/jboss-deployment-structure/deployment/dependencies/module/@name");
-                NodeList nl = (NodeList) xp.evaluate(sd.getDocument(), XPathConstants.NODESET);
-                int n = nl.getLength();
-                for (int i = 0; i < n; i++) {
-                    if (moduleMap.values().contains(nl.item(i).getTextContent()))
-                        continue;
-                    modules.add(nl.item(i).getTextContent());
-                }
-                getLog().debug("From sub-deployment <" + sd.getName() + ">:" + modules);
-                fillModuleEntries(doc, subDependencies, modules);
+                List<String> subModules = getSubDeploymentModules(sd, deploymentModules, mods);
+                fillModuleEntries(doc, subDependencies, subModules);
                 getLog().debug("Child-Elements for <" + subEl.getAttribute("name") + ">: " + subEl.getChildNodes().getLength());
                 getLog().debug(
                         "Element <" + subEl.getTagName() + "." + subDependencies.getTagName() + ">: " + subDependencies.getChildNodes().getLength()
@@ -334,114 +491,104 @@ public class EAP6DeploymentStructureMojo extends AbstractEAP6Mojo {
 
             }
         }
-        NodeList nlSub = (NodeList) xp_subdeployment.evaluate(doc, XPathConstants.NODESET);
+        NodeList nlSub = (NodeList) XmlSupport.xpath(XP_SUBDEPLOYMENT).evaluate(doc, XPathConstants.NODESET);
         int nSub = nlSub.getLength();
         getLog().debug("Retrieved subdeployment-sections (" + nSub + ")");
     }
 
-    protected void fillModuleEntries(Document doc, Element dependencies, Collection<String> modules) throws XPathExpressionException {
-        for (String module : modules) {
-            XPathExpression xp = xpf.newXPath().compile("module [@name=\"" + module + "\"]");
-            // getLog().debug(xp.toString());
-            Object result = xp.evaluate(dependencies, XPathConstants.NODE);
-            if (result == null) {
-                getLog().debug("insert module-dependency for " + module);
-                Element moduleEl = doc.createElement("module");
-                moduleEl.setAttribute("name", module);
-                if (defaultSlot != null && !defaultSlot.isEmpty()) {
-                    moduleEl.setAttribute("slot", defaultSlot);
-                }
-                if (exportModules) {
-                    moduleEl.setAttribute("export", "true");
-                }
-                dependencies.appendChild(moduleEl);
-                // if (verbose) {
-                // getLog().debug("Module <" + moduleEl.getAttribute("name") + ">:" + moduleEl);
-                // }
-            } else {
-                if (verbose) {
-                    getLog().debug("unresolved dependency with module-name " + module);
-                }
-                printXpathResult(result);
+    /**
+     * Same as {@link #buildDeploymentStructure(Document, Map, List)}, with the modules merged by the streaming writer
+     */
+    protected void buildDeploymentStructure(StreamingDescriptorWriter writer, Map<Artifact, String> moduleMap, List<SubDeployment> subdeployments)
+            throws MojoFailureException {
+        Collection<String> mods = pruneModules(moduleMap.values(), Collections.<String> emptyList(), defaultSlot, "deployment");
+        getLog().debug("From project-dependencies" + mods);
+        final boolean pathFilters = usePathFilters(subdeployments);
+        Map<String, String> attributes = getModuleAttributes();
+        for (String module : mods)
+            writer.addModule(module, attributes, pathFilters ? getIncludePaths(module) : null);
+
+        if (subdeployments != null && !subdeployments.isEmpty()) {
+            Set<String> deploymentModules = new HashSet<String>(moduleMap.values());
+            for (SubDeployment sd : subdeployments) {
+                writer.addSubDeployment(sd.getName());
+                for (String module : getSubDeploymentModules(sd, deploymentModules, mods))
+                    writer.addModule(sd.getName(), module, attributes, null);
             }
         }
     }
 
-    private void printXpathResult(Object result) {
-        if (result == null) {
-            return;
-        }
-        getLog().debug("xpath-result:");
-        NodeList nodes = (NodeList) result;
-        for (int i = 0; i < nodes.getLength(); i++) {
-            getLog().debug(nodes.item(i).getNodeValue());
-        }
+    /**
+     * Path filters are only generated without sub-deployments: those see the exported modules, so their packages must not be restricted to the ones
+     * of this project
+     */
+    private boolean usePathFilters(List<SubDeployment> subdeployments) {
+        final boolean pathFilters = modulePaths != null && (subdeployments == null || subdeployments.isEmpty());
+        if (modulePaths != null && !pathFilters)
+            getLog().info("No path filters for module dependencies, the sub-deployments see the exported modules");
+        return pathFilters;
     }
 
-    private Document getDeploymentStructureFromArchive(File zipFile) throws Exception {
-        getLog().debug("Read deployment-informations from archive <" + zipFile + ">");
-        ZipInputStream zis = new ZipInputStream(new FileInputStream(zipFile));
-        ZipEntry entry;
-        Document doc = null;
-        boolean done = false;
-        while (!done && (entry = zis.getNextEntry()) != null) {
-            String entryName = entry.getName().toLowerCase();
-            if (entryName.endsWith("meta-inf/" + JBOSS_SUBDEPLOYMENT) || entryName.endsWith("web-inf/" + JBOSS_SUBDEPLOYMENT)) {
-                byte[] buf = IOUtils.toByteArray(zis);
-                if (verbose) {
-                    getLog().debug(new String(buf, encoding));
-                }
-                DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-                factory.setNamespaceAware(true);
-                // doc=factory.newDocumentBuilder().parse(new ByteArrayInputStream(buf),encoding);
-                doc = factory.newDocumentBuilder().parse(new org.xml.sax.InputSource(new java.io.StringReader(new String(buf, encoding).trim())));
-                done = true;
-            } else {
-                if (entry.getCompressedSize() >= 0) {
-                    if (verbose) {
-                        getLog().debug("Skipping entry <" + entryName + "> to next entry for bytes:" + entry.getCompressedSize());
-                    }
-                    zis.skip(entry.getCompressedSize());
-                }
+    /**
+     * Returns the modules of the sub-deployment which are not already module dependencies of the deployment
+     */
+    private List<String> getSubDeploymentModules(SubDeployment sd, Set<String> deploymentModules, Collection<String> mods) throws MojoFailureException {
+        Set<String> modules = new LinkedHashSet<String>();
+        if (sd.getModules() != null) {
+            for (ModuleDependency module : sd.getModules()) {
+                if (deploymentModules.contains(module.getName()))
+                    continue;
+                modules.add(module.getName());
             }
         }
-        zis.close();
-        return doc;
+        List<String> subModules = pruneModules(modules, exportModules ? mods : Collections.<String> emptyList(), defaultSlot, "sub-deployment "
+                + sd.getName());
+        getLog().debug("From sub-deployment <" + sd.getName() + ">:" + subModules);
+        return subModules;
+    }
+
+    /**
+     * The attributes of generated module dependencies after the name
+     */
+    private Map<String, String> getModuleAttributes() {
+        Map<String, String> attributes = new LinkedHashMap<String, String>();
+        if (defaultSlot != null && !defaultSlot.isEmpty())
+            attributes.put("slot", defaultSlot);
+        if (exportModules)
+            attributes.put("export", "true");
+        return attributes;
+    }
+
+    protected void fillModuleEntries(Document doc, Element dependencies, Collection<String> modules) throws XPathExpressionException {
+        fillModuleEntries(doc, dependencies, modules, false);
     }
 
-    private Document getDeploymentStructureFromDirectory(File directory) throws Exception {
-        getLog().debug("Read deployment-informations from directory <" + directory + ">");
-        DirectoryScanner ds = new DirectoryScanner();
-        ds.setBasedir(directory);
-        ds.setIncludes(new String[] { "**/META-INF/" + JBOSS_SUBDEPLOYMENT, "**/meta-inf/" + JBOSS_SUBDEPLOYMENT, "**/WEB-INF/" + JBOSS_SUBDEPLOYMENT,
-                "**/web-inf/" + JBOSS_SUBDEPLOYMENT });
-        ds.scan();
-        String[] fileNames = ds.getIncludedFiles();
-        getLog().debug("" + fileNames.length + " deployment-information files found");
-        Document doc = null;
-        for (String fileName : fileNames) {
-            File f = new File(directory, fileName);
-            InputStream is = new FileInputStream(f);
-            byte[] buf = IOUtils.toByteArray(is);
-            if (verbose) {
-                getLog().debug(new String(buf, encoding));
+    /**
+     * @param pathFilters
+     *            restrict new module dependencies to the packages used by the project
+     */
+    protected void fillModuleEntries(Document doc, Element dependencies, Collection<String> modules, boolean pathFilters) throws XPathExpressionException {
+        ModuleElements existing = new ModuleElements(dependencies);
+        for (String module : modules) {
+            Element moduleEl = existing.add(module);
+            if (moduleEl != null) {
+                getLog().debug("insert module-dependency for " + module);
+                if (defaultSlot != null && !defaultSlot.isEmpty()) {
+                    moduleEl.setAttribute("slot", defaultSlot);
+                }
+                if (exportModules) {
+                    moduleEl.setAttribute("export", "true");
+                }
+                if (pathFilters) {
+                    appendPathFilter(doc, moduleEl, module);
+                }
+            } else if (verbose) {
+                getLog().debug("module-dependency for " + module + " already declared");
             }
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setNamespaceAware(true);
-            // doc=factory.newDocumentBuilder().parse(new ByteArrayInputStream(buf),encoding);
-            doc = factory.newDocumentBuilder().parse(new org.xml.sax.InputSource(new java.io.StringReader(new String(buf, encoding).trim())));
-            is.close();
-            break;
         }
-
-        return doc;
     }
 
     protected Document getDeploymentStructure(File file) throws Exception {
-        if (file.isDirectory()) { // inside Eclipse/m2e??
-            return getDeploymentStructureFromDirectory(file);
-        } else {
-            return getDeploymentStructureFromArchive(file);
-        }
+        return new SubDeploymentReader(getLog(), encoding, verbose).read(file);
     }
 }
@@ -0,0 +1,150 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.sonatype.plexus.build.incremental.BuildContext;
+
+/**
+ * This plugin generates a dictionary file from a local JBoss modules
+ * directory, mapping the maven coordinates found in the pom.properties of
+ * every module jar to the module.
+ *
+ * Configuration items:
+ * <ul>
+ *
+ * <li>modulesRoot: The modules directory of the server, e.g.
+ * <pre>/usr/share/jbossas/modules</pre>.</li>
+ *
+ * <li>outputFile: The generated dictionary. By default,
+ * <pre>${project.build.directory}/eap6-dictionaries/modules.dict</pre>.</li>
+ *
+ * <li>parallelism: Number of threads reading modules; 0 (default) uses one
+ * thread per processor.</li>
+ *
+ * <li>identifyByChecksum: Identify jars without pom.properties by their
+ * SHA-1 in the local repository. The digests of the repository jars are kept
+ * in digestIndexFile and only computed for new or changed jars.</li>
+ *
+ * </ul>
+ *
+ * Usage:
+ * <pre>
+ * mvn eap6:generate-dictionary -Deap6.modulesRoot=/usr/share/jbossas/modules -Deap6.outputFile=jboss.dict
+ * </pre>
+ *
+ * @since 1.0.1
+ */
+@Mojo(name = "generate-dictionary", requiresProject = false, threadSafe = true)
+public class EAP6GenerateDictionaryMojo extends AbstractMojo {
+
+    /**
+     * The modules directory to scan
+     */
+    @Parameter(property = "eap6.modulesRoot", required = true)
+    protected File modulesRoot;
+
+    /**
+     * The dictionary file to write
+     */
+    @Parameter(property = "eap6.outputFile", defaultValue = "${project.build.directory}/eap6-dictionaries/modules.dict", required = true)
+    protected File outputFile;
+
+    /**
+     * Number of threads reading modules; 0 for the number of processors
+     */
+    @Parameter(property = "eap6.parallelism", defaultValue = "0")
+    protected int parallelism;
+
+    /**
+     * Identify jars without pom.properties by their SHA-1 in the local repository
+     */
+    @Parameter(property = "eap6.identifyByChecksum", defaultValue = "false")
+    protected boolean identifyByChecksum;
+
+    /**
+     * The repository whose jars are indexed for identifyByChecksum
+     */
+    @Parameter(property = "eap6.repositoryDirectory", defaultValue = "${settings.localRepository}")
+    protected File repositoryDirectory;
+
+    /**
+     * The persisted digest index of repositoryDirectory
+     */
+    @Parameter(property = "eap6.digestIndexFile", defaultValue = "${user.home}/.m2/eap6-digests.idx")
+    protected File digestIndexFile;
+
+    // Injection of BuildContext for m2e-compatibility
+    @Component
+    protected BuildContext buildContext;
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (modulesRoot == null || !modulesRoot.isDirectory())
+            throw new MojoFailureException("Modules root " + modulesRoot + " is not a directory");
+        final long start = System.currentTimeMillis();
+        final List<DictItem> items;
+        try {
+            final ModuleScanner scanner = new ModuleScanner(getLog(), parallelism);
+            if (identifyByChecksum)
+                scanner.setDigestIndex(loadDigestIndex());
+            items = scanner.scan(modulesRoot);
+        } catch (final Exception e) {
+            throw new MojoExecutionException("Cannot scan modules " + modulesRoot, e);
+        } finally {
+            XmlSupport.release();
+        }
+        final File parent = outputFile.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists())
+            parent.mkdirs();
+        try {
+            final Writer out = new OutputStreamWriter(new FileOutputStream(outputFile), "UTF-8");
+            try {
+                ModuleScanner.write(items, "Generated from " + modulesRoot.getPath(), out);
+            } finally {
+                out.close();
+            }
+        } catch (final Exception e) {
+            throw new MojoExecutionException("Cannot write dictionary " + outputFile, e);
+        }
+        getLog().info("Generated dictionary <" + outputFile.getPath() + "> with " + items.size() + " entries in " + (System.currentTimeMillis() - start)
+                + " ms");
+        if (buildContext != null)
+            buildContext.refresh(outputFile);
+    }
+
+    private DigestIndex loadDigestIndex() throws IOException {
+        final DigestIndex index = DigestIndex.load(digestIndexFile);
+        final int changed = index.update(repositoryDirectory, getLog(), parallelism);
+        if (index.isModified())
+            index.save(digestIndexFile);
+        getLog().info("Digest index <" + digestIndexFile.getPath() + "> with " + index.size() + " jars, " + changed + " new or changed");
+        return index;
+    }
+}
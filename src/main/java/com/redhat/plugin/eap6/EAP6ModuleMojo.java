@@ -18,15 +18,13 @@
 
 package com.redhat.plugin.eap6;
 
+import java.util.Collections;
 import java.util.Map;
 
 import java.io.File;
 
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -130,87 +128,81 @@ public class EAP6ModuleMojo extends AbstractEAP6Mojo {
 
     private static final String MODULE_DESCRIPTOR_NAME = "module.xml";
 
-    private static XPathFactory xpf;
-    private static XPathExpression xp_module;
-    private static XPathExpression xp_dependencies;
-    private static XPathExpression xp_resources;
-    private static XPathExpression xp_resource_root;
-
-    static {
-        try {
-            xpf = XPathFactory.newInstance();
-            XPath xpath = xpf.newXPath();
-            xpath.setNamespaceContext(new NamespaceResolver());
-            xp_module = xpath.compile("/ns1:module/ns1:dependencies/ns1:module");
-            xp_dependencies = xpath.compile("/ns1:module/ns1:dependencies");
-            xp_resources = xpath.compile("/ns1:module/ns1:resources");
-            xp_resource_root = xpath.compile("/ns1:module/ns1:resources/ns1:resource-root");
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-    }
+    private static final String XP_MODULE = "/ns1:module/ns1:dependencies/ns1:module";
+    private static final String XP_DEPENDENCIES = "/ns1:module/ns1:dependencies";
+    private static final String XP_RESOURCES = "/ns1:module/ns1:resources";
+    private static final String XP_RESOURCE_ROOT = "/ns1:module/ns1:resources/ns1:resource-root";
 
     @Override
-    public void execute() throws MojoExecutionException, MojoFailureException {
+    protected void doExecute() throws MojoExecutionException, MojoFailureException {
+
+        if (generate && isUpToDate(new File(workDirectory, MODULE_DESCRIPTOR_NAME), MODULE_DESCRIPTOR_NAME)) {
+            generateJandexIndex();
+            return;
+        }
 
         initializeDictionaries();
 
         // Are we to generate the file?
         if (generate) {
 
+            if (streamingXml) {
+                StreamingDescriptorWriter writer = new StreamingDescriptorWriter("module", encoding);
+                buildModule(writer, moduleDependencies);
+                writeXmlFile(writer, MODULE_DESCRIPTOR_NAME, workDirectory, MODULE_DESCRIPTOR_NAME);
+                validateModuleDependencies(writer.getModules());
+                saveInputFingerprint();
+                generateJandexIndex();
+                printResolutionStatistics();
+                return;
+            }
+
             Document doc = initializeSkeletonFile (MODULE_DESCRIPTOR_NAME);
 
             try {
-                buildModule(doc, artifactsAsModules);
+                buildModule(doc, moduleDependencies);
 
                 // Check if there are any modules that are possibly unnecessary
-                NodeList nl = (NodeList) xp_module.evaluate(doc, XPathConstants.NODESET);
-                int n = nl.getLength();
-                for (int i = 0; i < n; i++) {
-                    String mname = ((Element) nl.item(i)).getAttribute("name");
-                    // If this module is not in dependencies, warn
-                    Artifact a = reverseMap.get(mname);
-                    if (a == null)
-                        getLog().warn("No dependencies to module " + mname);
-                    else {
-                        if (!a.getScope().equals(Artifact.SCOPE_PROVIDED))
-                            getLog().warn("Module does not appear with provided scope in POM:" + mname);
-                    }
-                }
+                NodeList nl = (NodeList) XmlSupport.xpath(XP_MODULE).evaluate(doc, XPathConstants.NODESET);
+                validateModuleDependencies(nl);
             } catch (Exception e) {
                 throw new MojoFailureException("Cannot process XML", e);
             }
 
             writeXmlFile(doc, workDirectory, MODULE_DESCRIPTOR_NAME);
+            saveInputFingerprint();
+            generateJandexIndex();
         }
+        printResolutionStatistics();
+    }
+
+    @Override
+    protected void addInputs(InputFingerprint fingerprint) {
+        fingerprint.add("buildFinalName", buildFinalName);
     }
 
     protected void buildModule(Document doc, Map<Artifact, String> moduleMap) throws MojoFailureException, XPathExpressionException {
 
-        // check if there is a mapping in the dictionary for the project artifact
-        DictItem mapping = dictionaries.find(getLog(),project.getGroupId(), project.getArtifactId(), project.getVersion());
-        if (mapping == null || mapping.getModuleName() == null) {
-            throw new MojoFailureException("No mapping found for the project artifact: " + project.getArtifact());
-        }
+        DictItem mapping = getProjectMapping();
 
         Element root = doc.getDocumentElement();
         if (!root.getTagName().equals("module"))
             throw new MojoFailureException("Root element is not module");
         root.setAttribute("name", mapping.getModuleName());
 
-        Element dependencies = (Element) xp_dependencies.evaluate(doc, XPathConstants.NODE);
+        Element dependencies = (Element) XmlSupport.xpath(XP_DEPENDENCIES).evaluate(doc, XPathConstants.NODE);
         if (dependencies == null) {
             dependencies = doc.createElement("dependencies");
             root.insertBefore(dependencies, root.getFirstChild());
         }
 
-        Element resources = (Element) xp_resources.evaluate(doc, XPathConstants.NODE);
+        Element resources = (Element) XmlSupport.xpath(XP_RESOURCES).evaluate(doc, XPathConstants.NODE);
         if (resources == null) {
             resources = doc.createElement("resources");
             root.insertBefore(resources, root.getFirstChild());
         }
 
-        Element resource_root = (Element) xp_resource_root.evaluate(doc, XPathConstants.NODE);
+        Element resource_root = (Element) XmlSupport.xpath(XP_RESOURCE_ROOT).evaluate(doc, XPathConstants.NODE);
         if (resource_root == null) {
             resource_root = doc.createElement("resource-root");
             resources.appendChild(resource_root);
@@ -219,14 +211,34 @@ public class EAP6ModuleMojo extends AbstractEAP6Mojo {
         // set resource-root path attribute
         resource_root.setAttribute("path", buildFinalName+"."+project.getPackaging());
 
-        for (Map.Entry<Artifact, String> entry : moduleMap.entrySet()) {
-            String module = entry.getValue();
-            XPathExpression xp = xpf.newXPath().compile("module [@name=\"" + module + "\"]");
-            if (xp.evaluate(dependencies, XPathConstants.NODE) == null) {
-                Element moduleEl = doc.createElement("module");
-                moduleEl.setAttribute("name", module);
-                dependencies.appendChild(moduleEl);
-            }
+        ModuleElements existing = new ModuleElements(dependencies);
+        for (String module : pruneModules(moduleMap.values(), Collections.<String> emptyList(), ModuleDependency.MAIN_SLOT, "module " + mapping.getModuleName())) {
+            Element moduleEl = existing.add(module);
+            // only imports are filtered: the dependencies are not exported, so an exports filter would have no effect
+            if (moduleEl != null)
+                appendPathFilter(doc, moduleEl, module);
+        }
+    }
+
+    /**
+     * Same as {@link #buildModule(Document, Map)}, with the modules merged by the streaming writer
+     */
+    protected void buildModule(StreamingDescriptorWriter writer, Map<Artifact, String> moduleMap) throws MojoFailureException {
+        DictItem mapping = getProjectMapping();
+        writer.setModuleName(mapping.getModuleName());
+        writer.setResourceRoot(buildFinalName+"."+project.getPackaging());
+        for (String module : pruneModules(moduleMap.values(), Collections.<String> emptyList(), ModuleDependency.MAIN_SLOT, "module " + mapping.getModuleName()))
+            writer.addModule(module, null, getIncludePaths(module));
+    }
+
+    /**
+     * Returns the mapping in the dictionary for the project artifact
+     */
+    private DictItem getProjectMapping() throws MojoFailureException {
+        DictItem mapping = findMapping(project.getGroupId(), project.getArtifactId(), project.getVersion());
+        if (mapping == null || mapping.getModuleName() == null) {
+            throw new MojoFailureException("No mapping found for the project artifact: " + project.getArtifact());
         }
+        return mapping;
     }
 }
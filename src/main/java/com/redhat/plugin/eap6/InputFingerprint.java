@@ -0,0 +1,217 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.maven.artifact.Artifact;
+import org.sonatype.plexus.build.incremental.BuildContext;
+
+/**
+ * SHA-1 over all inputs of a generated descriptor, compared with the one stored by the previous build. Files are represented by the digest of
+ * their content; in incremental IDE builds, the stored digest is reused for files without delta in the build context.
+ */
+public class InputFingerprint {
+
+    private static final String HEADER = "# eap6 input fingerprint 1";
+
+    private final File file;
+    private final MessageDigest digest;
+    private String previous;
+    private final Map<String, String> previousFiles = new HashMap<String, String>();
+    // file path -> content digest, sorted for a stable file
+    private final Map<String, String> files = new TreeMap<String, String>();
+    private String value;
+
+    /**
+     * @param file
+     *            keeps the fingerprint of the previous build
+     */
+    public InputFingerprint(final File file) throws IOException {
+        this.file = file;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        if (!file.isFile())
+            return;
+        final BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            if (!HEADER.equals(in.readLine()))
+                return;
+            previous = in.readLine();
+            String line;
+            while ((line = in.readLine()) != null) {
+                final int tab = line.indexOf('\t');
+                if (tab > 0)
+                    previousFiles.put(line.substring(tab + 1), line.substring(0, tab));
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Adds a named value; collections are added element by element
+     */
+    public InputFingerprint add(final String name, final Object value) {
+        final StringBuilder sb = new StringBuilder(name).append('=');
+        if (value instanceof Collection) {
+            for (final Object element : (Collection<?>) value)
+                sb.append(element).append(',');
+        } else {
+            sb.append(value);
+        }
+        update(sb.append('\n').toString());
+        return this;
+    }
+
+    /**
+     * Adds the content of a file, or its absence
+     */
+    public InputFingerprint addFile(final String name, final File f, final BuildContext buildContext) throws IOException {
+        if (f == null || !f.isFile())
+            return add(name, "-");
+        final String path = f.getAbsolutePath();
+        String sha1 = previousFiles.get(path);
+        if (sha1 == null || buildContext == null || !buildContext.isIncremental() || buildContext.hasDelta(f))
+            sha1 = DigestIndex.sha1(f);
+        files.put(path, sha1);
+        return add(name, path + "|" + sha1);
+    }
+
+    /**
+     * Adds coordinates, type, scope and file of the artifacts, in a stable order. An artifact resolved to a directory (a module of the reactor
+     * before packaging) is added with all files below it, the directory itself does not change with its content.
+     */
+    public InputFingerprint addArtifacts(final String name, final Collection<Artifact> artifacts) {
+        final List<String> lines = new ArrayList<String>(artifacts.size());
+        final Map<String, File> directories = new TreeMap<String, File>();
+        for (final Artifact a : artifacts) {
+            final File f = a.getFile();
+            final String coordinates = a.getGroupId() + ":" + a.getArtifactId() + ":" + a.getVersion() + ":" + a.getType() + ":" + a.getClassifier()
+                    + ":" + a.getScope();
+            if (f != null && f.isDirectory()) {
+                lines.add(coordinates + ":" + f.getAbsolutePath() + "/");
+                directories.put(coordinates, f);
+            } else {
+                lines.add(coordinates + ":" + (f == null ? "-" : f.getAbsolutePath() + "|" + f.length() + "|" + f.lastModified()));
+            }
+        }
+        Collections.sort(lines);
+        add(name, lines);
+        for (final Map.Entry<String, File> directory : directories.entrySet())
+            addDirectory(name + ":" + directory.getKey(), directory.getValue(), "");
+        return this;
+    }
+
+    /**
+     * Adds relative path, size and modification time of the files in the directory tree with the given suffix
+     */
+    public InputFingerprint addDirectory(final String name, final File directory, final String suffix) {
+        final List<String> lines = new ArrayList<String>();
+        collect(directory, "", suffix, lines);
+        Collections.sort(lines);
+        return add(name, lines);
+    }
+
+    private static void collect(final File directory, final String prefix, final String suffix, final List<String> lines) {
+        final File[] children = directory.listFiles();
+        if (children == null)
+            return;
+        for (final File f : children) {
+            if (f.isDirectory())
+                collect(f, prefix + f.getName() + "/", suffix, lines);
+            else if (f.getName().endsWith(suffix))
+                lines.add(prefix + f.getName() + "|" + f.length() + "|" + f.lastModified());
+        }
+    }
+
+    private void update(final String s) {
+        if (value != null)
+            throw new IllegalStateException("Fingerprint already computed");
+        digest.update(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the fingerprint of all added inputs
+     */
+    public String getValue() {
+        if (value == null) {
+            final StringBuilder sb = new StringBuilder(40);
+            for (final byte b : digest.digest()) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            value = sb.toString();
+        }
+        return value;
+    }
+
+    /**
+     * Are the inputs the same as in the build that stored the fingerprint?
+     */
+    public boolean isUnchanged() {
+        return getValue().equals(previous);
+    }
+
+    /**
+     * Stores the fingerprint for the next build
+     */
+    public void save() throws IOException {
+        final File tmp = AtomicFiles.createTemp(file);
+        try {
+            final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8"));
+            try {
+                out.write(HEADER);
+                out.write('\n');
+                out.write(getValue());
+                out.write('\n');
+                for (final Map.Entry<String, String> entry : files.entrySet()) {
+                    out.write(entry.getValue() + "\t" + entry.getKey());
+                    out.write('\n');
+                }
+            } finally {
+                out.close();
+            }
+            AtomicFiles.replace(tmp, file);
+        } finally {
+            tmp.delete();
+        }
+        previous = getValue();
+    }
+}
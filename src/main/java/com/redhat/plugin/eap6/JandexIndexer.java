@@ -0,0 +1,177 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.commons.io.FileUtils;
+import org.jboss.jandex.Index;
+import org.jboss.jandex.IndexWriter;
+import org.jboss.jandex.Indexer;
+
+/**
+ * Writes a Jandex annotation index (<code>META-INF/jandex.idx</code>) of a classes directory, so the server does not scan the classes for
+ * annotations at deploy time.
+ *
+ * Class files are read in parallel, in batches of bounded size; the Jandex indexer itself is not thread-safe and indexes each batch in a stable
+ * order before the next one is read, so only one batch of class files is held in memory. The index is only rebuilt
+ * when the fingerprint of the class files (paths, sizes and modification times) changed.
+ */
+public class JandexIndexer {
+
+    public static final String INDEX = "META-INF/jandex.idx";
+
+    /**
+     * Index format of Jandex 1.0, read by all EAP6 releases
+     */
+    public static final int INDEX_VERSION = 2;
+
+    private static final int CHUNK = 32;
+    private static final int BATCH = 512;
+
+    private final File classesDirectory;
+
+    public JandexIndexer(final File classesDirectory) {
+        this.classesDirectory = classesDirectory;
+    }
+
+    /**
+     * Writes the index into the classes directory, unless it is up to date
+     *
+     * @param fingerprintFile
+     *            keeps the fingerprint of the indexed classes
+     * @return the number of indexed classes, or -1 if the index was up to date
+     */
+    public int index(final File fingerprintFile) throws IOException {
+        final List<File> files = new ArrayList<File>();
+        collect(classesDirectory, files);
+        Collections.sort(files);
+        final File indexFile = new File(classesDirectory, INDEX);
+        final String fingerprint = fingerprint(files);
+        if (indexFile.isFile() && fingerprintFile.isFile() && fingerprint.equals(FileUtils.readFileToString(fingerprintFile, "UTF-8")))
+            return -1;
+
+        final Indexer indexer = new Indexer();
+        final byte[][] classes = new byte[Math.min(BATCH, files.size())][];
+        for (int start = 0; start < files.size(); start += BATCH) {
+            final int end = Math.min(start + BATCH, files.size());
+            try {
+                SharedForkJoinPool.get().invoke(new ReadTask(files, classes, start, start, end));
+            } catch (final RuntimeException e) {
+                if (e.getCause() instanceof IOException)
+                    throw (IOException) e.getCause();
+                throw e;
+            }
+            for (int i = start; i < end; i++) {
+                try {
+                    indexer.index(new ByteArrayInputStream(classes[i - start]));
+                } catch (final RuntimeException e) {
+                    throw new IOException("Cannot index " + files.get(i) + ": " + e, e);
+                }
+                classes[i - start] = null;
+            }
+        }
+        final Index index = indexer.complete();
+
+        indexFile.getParentFile().mkdirs();
+        final OutputStream out = new FileOutputStream(indexFile);
+        try {
+            new IndexWriter(out).write(index, INDEX_VERSION);
+        } finally {
+            out.close();
+        }
+        FileUtils.writeStringToFile(fingerprintFile, fingerprint, "UTF-8");
+        return files.size();
+    }
+
+    private static void collect(final File directory, final List<File> files) {
+        final File[] children = directory.listFiles();
+        if (children == null)
+            return;
+        for (final File f : children) {
+            if (f.isDirectory())
+                collect(f, files);
+            else if (f.getName().endsWith(".class"))
+                files.add(f);
+        }
+    }
+
+    private String fingerprint(final List<File> files) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            final int prefix = classesDirectory.getPath().length();
+            for (final File f : files)
+                digest.update((f.getPath().substring(prefix) + '|' + f.length() + '|' + f.lastModified() + '\n').getBytes(StandardCharsets.UTF_8));
+            final StringBuilder sb = new StringBuilder();
+            for (final byte b : digest.digest())
+                sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class ReadTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<File> files;
+        private final byte[][] classes;
+        private final int offset;
+        private final int from;
+        private final int to;
+
+        /**
+         * Reads the files from (inclusive) to (exclusive) into classes, starting at the index from - offset
+         */
+        ReadTask(final List<File> files, final byte[][] classes, final int offset, final int from, final int to) {
+            this.files = files;
+            this.classes = classes;
+            this.offset = offset;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK) {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new ReadTask(files, classes, offset, from, middle), new ReadTask(files, classes, offset, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                try {
+                    classes[i - offset] = Files.readAllBytes(files.get(i).toPath());
+                } catch (final IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+    }
+}
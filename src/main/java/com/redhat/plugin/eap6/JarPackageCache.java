@@ -0,0 +1,202 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Packages containing classes per jar, kept JVM-wide for the most recently used jars and persisted between builds. An entry is valid while size and
+ * last-modified time of the jar are unchanged.
+ */
+public final class JarPackageCache {
+
+    private static final String HEADER = "# eap6 package cache 1";
+    private static final String VERSIONS = "META-INF/versions/";
+
+    static final int MAX_ENTRIES = 20000;
+
+    private static final Map<String, JarPackages> cache = new LinkedHashMap<String, JarPackages>(256, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, JarPackages> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private static final Map<String, Boolean> loadedFiles = new HashMap<String, Boolean>();
+    private static boolean modified;
+
+    private JarPackageCache() {
+    }
+
+    /**
+     * Returns the packages of the jar
+     */
+    public static Set<String> getPackages(final File jar) throws IOException {
+        final String key = jar.getCanonicalPath();
+        final long size = jar.length();
+        final long lastModified = jar.lastModified();
+        synchronized (cache) {
+            final JarPackages entry = cache.get(key);
+            if (entry != null && entry.size == size && entry.lastModified == lastModified)
+                return entry.packages;
+        }
+        final Set<String> packages = readPackages(jar);
+        synchronized (cache) {
+            cache.put(key, new JarPackages(size, lastModified, packages));
+            modified = true;
+        }
+        return packages;
+    }
+
+    /**
+     * Adds the entries of a persisted cache, once per file and JVM
+     */
+    public static void load(final File file) throws IOException {
+        synchronized (cache) {
+            if (loadedFiles.put(file.getCanonicalPath(), Boolean.TRUE) != null || !file.isFile())
+                return;
+            final BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                String line = in.readLine();
+                if (!HEADER.equals(line))
+                    return;
+                while ((line = in.readLine()) != null) {
+                    final String[] fields = line.split("\t", 4);
+                    if (fields.length != 4 || cache.containsKey(fields[0]))
+                        continue;
+                    final Set<String> packages = new TreeSet<String>();
+                    for (final String p : fields[3].split(","))
+                        if (p.length() > 0)
+                            packages.add(p);
+                    cache.put(fields[0], new JarPackages(Long.parseLong(fields[1]), Long.parseLong(fields[2]), Collections.unmodifiableSet(packages)));
+                }
+            } catch (final NumberFormatException e) {
+                // a damaged cache is rebuilt
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Persists all entries if any was added, dropping the ones of deleted or changed jars; written to a temporary file first, so concurrent builds
+     * never read a partial file
+     */
+    public static void save(final File file) throws IOException {
+        synchronized (cache) {
+            if (!modified)
+                return;
+            for (final Iterator<Map.Entry<String, JarPackages>> it = cache.entrySet().iterator(); it.hasNext();) {
+                final Map.Entry<String, JarPackages> entry = it.next();
+                final File jar = new File(entry.getKey());
+                if (jar.length() != entry.getValue().size || jar.lastModified() != entry.getValue().lastModified)
+                    it.remove();
+            }
+            final File tmp = AtomicFiles.createTemp(file);
+            try {
+                final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8"));
+                try {
+                    out.write(HEADER);
+                    out.write('\n');
+                    for (final Map.Entry<String, JarPackages> entry : cache.entrySet()) {
+                        final JarPackages jar = entry.getValue();
+                        out.write(entry.getKey() + "\t" + jar.size + "\t" + jar.lastModified + "\t");
+                        boolean first = true;
+                        for (final String p : jar.packages) {
+                            if (!first)
+                                out.write(',');
+                            out.write(p);
+                            first = false;
+                        }
+                        out.write('\n');
+                    }
+                } finally {
+                    out.close();
+                }
+                AtomicFiles.replace(tmp, file);
+            } finally {
+                tmp.delete();
+            }
+            modified = false;
+        }
+    }
+
+    public static void clear() {
+        synchronized (cache) {
+            cache.clear();
+            loadedFiles.clear();
+            modified = false;
+        }
+    }
+
+    private static Set<String> readPackages(final File jar) throws IOException {
+        final Set<String> packages = new TreeSet<String>();
+        final ZipFile zip = new ZipFile(jar);
+        try {
+            final Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (!name.endsWith(".class"))
+                    continue;
+                if (name.startsWith(VERSIONS)) {
+                    final int slash = name.indexOf('/', VERSIONS.length());
+                    if (slash < 0)
+                        continue;
+                    name = name.substring(slash + 1);
+                }
+                final int slash = name.lastIndexOf('/');
+                if (slash > 0)
+                    packages.add(name.substring(0, slash).replace('/', '.'));
+            }
+        } finally {
+            zip.close();
+        }
+        return Collections.unmodifiableSet(packages);
+    }
+
+    private static class JarPackages {
+        final long size;
+        final long lastModified;
+        final Set<String> packages;
+
+        JarPackages(final long size, final long lastModified, final Set<String> packages) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.packages = packages;
+        }
+    }
+}
@@ -3,22 +3,30 @@ package com.redhat.plugin.eap6
 import org.eclipse.xtend.lib.annotations.Accessors
 
 /**
- * Manages Maven-coordinates
+ * Manages Maven-coordinates; groupId and version are interned, as they repeat across many entries
  */
 class MavenGAV implements GAV{
 	@Accessors final String groupId;
 	@Accessors final String artifactId;
 	@Accessors final String version;
+	String baseVersion;
+	protected String string;
 
 	public new(String groupId, String artifactId, String version) {
-		this.groupId = groupId;
+		this.groupId = intern(groupId);
 		this.artifactId = artifactId;
-		this.version = version;
+		this.version = intern(version);
 	}
 
 	override String getBaseVersion()
 	{
-		return extractBaseVersion(this.version)
+		if (baseVersion == null && version != null)
+			baseVersion = intern(extractBaseVersion(this.version));
+		return baseVersion
+	}
+
+	def static String intern(String s) {
+		return if(s == null) null else s.intern();
 	}
 
 	def static public String extractBaseVersion(String version) {
@@ -28,12 +36,14 @@ class MavenGAV implements GAV{
 	}
 
 	override public String toString() {
-
-		val StringBuffer buf = new StringBuffer();
-		buf.append('''«groupId»:«artifactId»''');
-		if (version != null)
-			buf.append(':').append(version);
-		return buf.toString();
+		if (string == null) {
+			val StringBuilder buf = new StringBuilder();
+			buf.append(groupId).append(':').append(artifactId);
+			if (version != null)
+				buf.append(':').append(version);
+			string = buf.toString();
+		}
+		return string;
 	}
 
 
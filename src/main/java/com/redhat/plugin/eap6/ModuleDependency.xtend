@@ -0,0 +1,63 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.redhat.plugin.eap6
+
+import org.eclipse.xtend.lib.annotations.Accessors
+
+/**
+ * A <code>&lt;module name="..." slot="..." export="..." optional="..."/&gt;</code> dependency of a module or deployment. A filtered dependency
+ * restricts what is imported or exported through it by nested <code>imports</code>/<code>exports</code> filters or a <code>services</code>
+ * attribute, so it may not make all of the target visible.
+ */
+class ModuleDependency {
+	public static val String MAIN_SLOT = "main";
+
+	@Accessors final String name;
+	@Accessors final String slot;
+	@Accessors final boolean export;
+	@Accessors final boolean optional;
+	@Accessors final boolean filtered;
+
+	new(String name, String slot, boolean export, boolean optional) {
+		this(name, slot, export, optional, false)
+	}
+
+	new(String name, String slot, boolean export, boolean optional, boolean filtered) {
+		this.name = name;
+		this.slot = if(slot == null || slot.length == 0) MAIN_SLOT else slot;
+		this.export = export;
+		this.optional = optional;
+		this.filtered = filtered;
+	}
+
+	/**
+	 * "name:slot", the identifier of the module
+	 */
+	def String getKey() {
+		return key(name, slot);
+	}
+
+	def static String key(String name, String slot) {
+		return name + ':' + (if(slot == null || slot.length == 0) MAIN_SLOT else slot);
+	}
+
+	override public String toString() {
+		return key;
+	}
+}
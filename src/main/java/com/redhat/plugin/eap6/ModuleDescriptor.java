@@ -0,0 +1,113 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * The parts of a JBoss modules <code>module.xml</code> used by the plugin: name and slot, resource-roots and module dependencies. A
+ * <code>module-alias</code> is read as a module with an exported dependency to its target.
+ */
+public class ModuleDescriptor {
+
+    private final String name;
+    private final String slot;
+    private final List<String> resourceRoots;
+    private final List<ModuleDependency> dependencies;
+
+    public ModuleDescriptor(final String name, final String slot, final List<String> resourceRoots, final List<ModuleDependency> dependencies) {
+        this.name = name;
+        this.slot = slot == null || slot.length() == 0 ? ModuleDependency.MAIN_SLOT : slot;
+        this.resourceRoots = Collections.unmodifiableList(resourceRoots);
+        this.dependencies = Collections.unmodifiableList(dependencies);
+    }
+
+    /**
+     * Reads a module.xml; null if the root element is neither module nor module-alias
+     */
+    public static ModuleDescriptor read(final File moduleXml) throws IOException, SAXException {
+        final Element root = XmlSupport.documentBuilder().parse(moduleXml).getDocumentElement();
+        final List<String> resourceRoots = new ArrayList<String>();
+        final List<ModuleDependency> dependencies = new ArrayList<ModuleDependency>();
+        if ("module-alias".equals(root.getLocalName())) {
+            dependencies.add(new ModuleDependency(root.getAttribute("target-name"), root.getAttribute("target-slot"), true, false));
+        } else if ("module".equals(root.getLocalName())) {
+            final NodeList roots = root.getElementsByTagNameNS("*", "resource-root");
+            for (int i = 0; i < roots.getLength(); i++)
+                resourceRoots.add(((Element) roots.item(i)).getAttribute("path"));
+            for (Node node = root.getFirstChild(); node != null; node = node.getNextSibling()) {
+                if (node instanceof Element && "dependencies".equals(node.getLocalName())) {
+                    for (Node dep = node.getFirstChild(); dep != null; dep = dep.getNextSibling()) {
+                        if (dep instanceof Element && "module".equals(dep.getLocalName())) {
+                            final Element el = (Element) dep;
+                            dependencies.add(new ModuleDependency(el.getAttribute("name"), el.getAttribute("slot"), "true".equals(el.getAttribute("export")),
+                                    "true".equals(el.getAttribute("optional")), isFiltered(el)));
+                        }
+                    }
+                }
+            }
+        } else {
+            return null;
+        }
+        return new ModuleDescriptor(root.getAttribute("name"), root.getAttribute("slot"), resourceRoots, dependencies);
+    }
+
+    /**
+     * Has the dependency nested imports or exports filters, or a services attribute?
+     */
+    private static boolean isFiltered(final Element dependency) {
+        if (dependency.hasAttribute("services"))
+            return true;
+        for (Node node = dependency.getFirstChild(); node != null; node = node.getNextSibling())
+            if (node instanceof Element && ("imports".equals(node.getLocalName()) || "exports".equals(node.getLocalName())))
+                return true;
+        return false;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSlot() {
+        return slot;
+    }
+
+    public boolean isMainSlot() {
+        return ModuleDependency.MAIN_SLOT.equals(slot);
+    }
+
+    /**
+     * The path attributes of the resource-roots, relative to the module directory
+     */
+    public List<String> getResourceRoots() {
+        return resourceRoots;
+    }
+
+    public List<ModuleDependency> getDependencies() {
+        return dependencies;
+    }
+}
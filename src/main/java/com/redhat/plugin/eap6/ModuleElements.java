@@ -0,0 +1,86 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * The module elements of a dependencies element by name, built once, so merging module dependencies into a descriptor needs no XPath
+ * evaluation per module. Elements are matched by local name, so skeletons with a namespace work as well.
+ */
+public class ModuleElements {
+
+    private final Element dependencies;
+    private final Map<String, Element> modules;
+
+    public ModuleElements(final Element dependencies) {
+        this.dependencies = dependencies;
+        this.modules = children(dependencies, "module", "name");
+    }
+
+    public boolean contains(final String name) {
+        return modules.containsKey(name);
+    }
+
+    public Element get(final String name) {
+        return modules.get(name);
+    }
+
+    /**
+     * Appends a module element with the name, unless there is one
+     *
+     * @return the new element, or null if the module was already declared
+     */
+    public Element add(final String name) {
+        if (modules.containsKey(name))
+            return null;
+        final Document doc = dependencies.getOwnerDocument();
+        final Element moduleEl = doc.createElement("module");
+        moduleEl.setAttribute("name", name);
+        dependencies.appendChild(moduleEl);
+        modules.put(name, moduleEl);
+        return moduleEl;
+    }
+
+    /**
+     * Returns the child elements with the local name by the value of their key attribute, in document order; the first one wins
+     */
+    public static Map<String, Element> children(final Element parent, final String localName, final String keyAttribute) {
+        final Map<String, Element> result = new LinkedHashMap<String, Element>();
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element && localName.equals(localName(node))) {
+                final String key = ((Element) node).getAttribute(keyAttribute);
+                if (!result.containsKey(key))
+                    result.put(key, (Element) node);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The local name of namespace-aware nodes, the node name of the ones created without namespace
+     */
+    private static String localName(final Node node) {
+        return node.getLocalName() != null ? node.getLocalName() : node.getNodeName();
+    }
+}
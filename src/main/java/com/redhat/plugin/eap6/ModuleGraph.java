@@ -0,0 +1,226 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Dependency graph of the modules of a local JBoss installation, read lazily from the <code>module.xml</code> files of a modules directory (including
+ * its layers and add-ons). Graphs are shared JVM-wide per modules directory and created again when the directory or its
+ * <code>layers.conf</code> changed; a module is read again when its module.xml changed.
+ */
+public class ModuleGraph {
+
+    private static final int MAX_GRAPHS = 16;
+
+    private static final Map<String, ModuleGraph> graphs = new LinkedHashMap<String, ModuleGraph>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, ModuleGraph> eldest) {
+            return size() > MAX_GRAPHS;
+        }
+    };
+
+    private final List<File> roots = new ArrayList<File>();
+    private final Map<String, CachedModule> modules = new ConcurrentHashMap<String, CachedModule>();
+    private final long rootModified;
+    private final long layersConfModified;
+
+    private ModuleGraph(final File modulesRoot) throws IOException {
+        rootModified = modulesRoot.lastModified();
+        final File layersConf = new File(modulesRoot, "layers.conf");
+        layersConfModified = layersConf.lastModified();
+        // search order of JBoss modules: the modules directory, the layers of layers.conf, base, then the add-ons
+        roots.add(modulesRoot);
+        final List<String> layers = new ArrayList<String>();
+        if (layersConf.isFile()) {
+            final Properties conf = new Properties();
+            final InputStream in = new FileInputStream(layersConf);
+            try {
+                conf.load(in);
+            } finally {
+                in.close();
+            }
+            for (final String layer : conf.getProperty("layers", "").split(",")) {
+                if (layer.trim().length() > 0 && !layers.contains(layer.trim()))
+                    layers.add(layer.trim());
+            }
+        }
+        if (!layers.contains("base"))
+            layers.add("base");
+        for (final String layer : layers) {
+            final File dir = new File(modulesRoot, "system/layers/" + layer);
+            if (dir.isDirectory())
+                roots.add(dir);
+        }
+        final File[] addOns = new File(modulesRoot, "system/add-ons").listFiles();
+        if (addOns != null) {
+            Arrays.sort(addOns);
+            for (final File dir : addOns)
+                if (dir.isDirectory())
+                    roots.add(dir);
+        }
+    }
+
+    public static ModuleGraph forRoot(final File modulesRoot) throws IOException {
+        if (!modulesRoot.isDirectory())
+            throw new IOException("Modules root " + modulesRoot + " is not a directory");
+        final String key = modulesRoot.getCanonicalPath();
+        synchronized (graphs) {
+            ModuleGraph graph = graphs.get(key);
+            if (graph == null || graph.rootModified != modulesRoot.lastModified()
+                    || graph.layersConfModified != new File(modulesRoot, "layers.conf").lastModified()) {
+                graph = new ModuleGraph(modulesRoot);
+                graphs.put(key, graph);
+            }
+            return graph;
+        }
+    }
+
+    /**
+     * Returns the module, or null if it is not installed or cannot be read
+     */
+    public ModuleDescriptor getModule(final String name, final String slot) {
+        final String key = ModuleDependency.key(name, slot);
+        final CachedModule cached = modules.get(key);
+        if (cached != null && cached.file.lastModified() == cached.lastModified)
+            return cached.descriptor;
+        final String path = name.replace('.', '/') + '/' + (slot == null || slot.length() == 0 ? ModuleDependency.MAIN_SLOT : slot) + "/module.xml";
+        File file = null;
+        for (final File root : roots) {
+            final File f = new File(root, path);
+            if (f.isFile()) {
+                file = f;
+                break;
+            }
+        }
+        ModuleDescriptor descriptor = null;
+        long lastModified = 0;
+        if (file != null) {
+            lastModified = file.lastModified();
+            try {
+                descriptor = ModuleDescriptor.read(file);
+            } catch (final Exception e) {
+                descriptor = null;
+            }
+        }
+        // missing modules are not cached, they may be installed later
+        if (file != null)
+            modules.put(key, new CachedModule(descriptor, file, lastModified));
+        return descriptor;
+    }
+
+    /**
+     * Returns the keys (name:slot) of all modules visible to a dependent of the module: the module itself and, transitively, its exported
+     * non-optional dependencies. Filtered dependencies are not followed, they may export only part of their target.
+     */
+    public Set<String> getExportedClosure(final String name, final String slot) {
+        final Set<String> closure = new HashSet<String>();
+        final List<ModuleDependency> work = new ArrayList<ModuleDependency>();
+        work.add(new ModuleDependency(name, slot, true, false));
+        while (!work.isEmpty()) {
+            final ModuleDependency dep = work.remove(work.size() - 1);
+            if (!closure.add(dep.getKey()))
+                continue;
+            final ModuleDescriptor module = getModule(dep.getName(), dep.getSlot());
+            if (module == null)
+                continue;
+            for (final ModuleDependency d : module.getDependencies())
+                if (d.isExport() && !d.isOptional() && !d.isFiltered())
+                    work.add(d);
+        }
+        return closure;
+    }
+
+    /**
+     * Determines the modules that are already visible through the exports of another module of the list, or of one of the given parent modules.
+     * Of modules exporting each other, the first one is pruned.
+     *
+     * @param modules
+     *            the required module names, in slot
+     * @param parents
+     *            module names visible anyway, e.g. exported by the parent deployment; may be empty
+     * @return pruned module name to the module name it is visible through, in order of modules
+     */
+    public Map<String, String> prune(final Collection<String> modules, final Collection<String> parents, final String slot) {
+        final Map<String, Set<String>> closures = new LinkedHashMap<String, Set<String>>();
+        for (final String module : parents)
+            closures.put(module, getExportedClosure(module, slot));
+        final Set<String> kept = new HashSet<String>(parents);
+        final List<String> candidates = new ArrayList<String>();
+        for (final String module : modules) {
+            if (!closures.containsKey(module)) {
+                closures.put(module, getExportedClosure(module, slot));
+                candidates.add(module);
+                kept.add(module);
+            }
+        }
+        final Map<String, String> pruned = new LinkedHashMap<String, String>();
+        for (final String module : candidates) {
+            final String key = ModuleDependency.key(module, slot);
+            for (final Map.Entry<String, Set<String>> entry : closures.entrySet()) {
+                final String other = entry.getKey();
+                if (!other.equals(module) && kept.contains(other) && entry.getValue().contains(key)) {
+                    pruned.put(module, other);
+                    kept.remove(module);
+                    break;
+                }
+            }
+        }
+        return pruned;
+    }
+
+    /**
+     * Logs the pruned modules
+     */
+    public static void report(final Log logger, final String context, final Map<String, String> pruned) {
+        if (pruned.isEmpty())
+            return;
+        logger.info("Pruned " + pruned.size() + " module dependencies of " + context + " already exported by other modules:");
+        for (final Map.Entry<String, String> entry : pruned.entrySet())
+            logger.info("  " + entry.getKey() + " (through " + entry.getValue() + ")");
+    }
+
+    private static class CachedModule {
+        final ModuleDescriptor descriptor;
+        final File file;
+        final long lastModified;
+
+        CachedModule(final ModuleDescriptor descriptor, final File file, final long lastModified) {
+            this.descriptor = descriptor;
+            this.file = file;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.maven.artifact.versioning.ComparableVersion;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Builds dictionary entries from a JBoss modules directory: every <code>module.xml</code> is read for the module name and its resource-roots, and
+ * every jar resource-root for the <code>META-INF/maven/&#42;&#42;/pom.properties</code> it contains.
+ *
+ * Directories are walked and modules are read on a fork/join pool; jars are opened as {@link ZipFile}, so only the central directory and the
+ * pom.properties entries are read. Jars without pom.properties can be identified by their SHA-1 through a {@link DigestIndex}.
+ */
+public class ModuleScanner {
+
+    private static final String MODULE_XML = "module.xml";
+
+    private static final Comparator<String> VERSION_ORDER = new Comparator<String>() {
+        @Override
+        public int compare(final String v1, final String v2) {
+            return new ComparableVersion(v1).compareTo(new ComparableVersion(v2));
+        }
+    };
+
+    private final Log logger;
+    private final int parallelism;
+    private DigestIndex digestIndex;
+
+    /**
+     * @param parallelism
+     *            threads of the fork/join pool; 0 for the number of processors
+     */
+    public ModuleScanner(final Log logger, final int parallelism) {
+        this.logger = logger;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Identifies jars without pom.properties by their SHA-1 in the index
+     */
+    public void setDigestIndex(final DigestIndex digestIndex) {
+        this.digestIndex = digestIndex;
+    }
+
+    /**
+     * Returns the sorted, deduplicated dictionary entries for all artifacts found below modulesRoot.
+     *
+     * An artifact contained in a single module is mapped without version. An artifact contained in several modules (e.g. different slots) is
+     * mapped by version, and without version to the module of the main slot with the highest version.
+     */
+    public List<DictItem> scan(final File modulesRoot) throws IOException {
+        if (!modulesRoot.isDirectory())
+            throw new IOException("Modules root " + modulesRoot + " is not a directory");
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        final List<ModuleArtifact> artifacts;
+        try {
+            artifacts = pool.invoke(new ScanTask(modulesRoot));
+        } finally {
+            pool.shutdown();
+        }
+        return toDictionary(artifacts);
+    }
+
+    /**
+     * Writes entries in dictionary file format
+     */
+    public static void write(final List<DictItem> items, final String header, final Writer out) throws IOException {
+        if (header != null)
+            out.write("# " + header + "\n\n");
+        for (final DictItem item : items) {
+            out.write(item.toString());
+            out.write('\n');
+        }
+    }
+
+    static List<DictItem> toDictionary(final List<ModuleArtifact> artifacts) {
+        // groupId:artifactId -> version -> artifact, sorted
+        final Map<String, Map<String, ModuleArtifact>> byGa = new TreeMap<String, Map<String, ModuleArtifact>>();
+        for (final ModuleArtifact artifact : artifacts) {
+            final String key = Dictionary.key(artifact.groupId, artifact.artifactId);
+            Map<String, ModuleArtifact> versions = byGa.get(key);
+            if (versions == null) {
+                versions = new TreeMap<String, ModuleArtifact>(VERSION_ORDER);
+                byGa.put(key, versions);
+            }
+            final ModuleArtifact existing = versions.get(artifact.version);
+            if (existing == null || (!existing.isMainSlot() && artifact.isMainSlot())
+                    || (existing.isMainSlot() == artifact.isMainSlot() && existing.module.compareTo(artifact.module) > 0))
+                versions.put(artifact.version, artifact);
+        }
+        final List<DictItem> items = new ArrayList<DictItem>();
+        for (final Map<String, ModuleArtifact> versions : byGa.values()) {
+            ModuleArtifact fallback = null;
+            boolean singleModule = true;
+            for (final ModuleArtifact artifact : versions.values()) {
+                if (fallback != null && !fallback.module.equals(artifact.module))
+                    singleModule = false;
+                if (fallback == null || artifact.isMainSlot() || !fallback.isMainSlot())
+                    fallback = artifact;
+            }
+            items.add(new DictItem(fallback.groupId, fallback.artifactId, null, fallback.module));
+            if (!singleModule)
+                for (final ModuleArtifact artifact : versions.values())
+                    items.add(new DictItem(artifact.groupId, artifact.artifactId, artifact.version, artifact.module));
+        }
+        return items;
+    }
+
+    List<ModuleArtifact> readModule(final File moduleXml) {
+        final List<ModuleArtifact> result = new ArrayList<ModuleArtifact>();
+        final ModuleDescriptor module;
+        try {
+            module = ModuleDescriptor.read(moduleXml);
+        } catch (final Exception e) {
+            logger.warn("Cannot read " + moduleXml + ": " + e.getMessage());
+            return result;
+        }
+        if (module == null)
+            return result;
+        for (final String path : module.getResourceRoots()) {
+            if (!path.endsWith(".jar"))
+                continue;
+            final File jar = new File(moduleXml.getParentFile(), path);
+            if (!jar.isFile()) {
+                logger.debug("Resource-root " + jar + " of module " + module.getName() + " not found");
+                continue;
+            }
+            try {
+                readJar(jar, module.getName(), module.getSlot(), result);
+            } catch (final IOException e) {
+                logger.warn("Cannot read " + jar + ": " + e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    private void readJar(final File jar, final String module, final String slot, final List<ModuleArtifact> result) throws IOException {
+        final int found = result.size();
+        final ZipFile zip = new ZipFile(jar);
+        try {
+            final Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                final String name = entry.getName();
+                if (!name.startsWith("META-INF/maven/") || !name.endsWith("/pom.properties"))
+                    continue;
+                final Properties properties = new Properties();
+                final InputStream in = zip.getInputStream(entry);
+                try {
+                    properties.load(in);
+                } finally {
+                    in.close();
+                }
+                final String groupId = properties.getProperty("groupId");
+                final String artifactId = properties.getProperty("artifactId");
+                final String version = properties.getProperty("version");
+                if (groupId == null || artifactId == null || version == null)
+                    logger.debug("Incomplete " + name + " in " + jar);
+                else
+                    result.add(new ModuleArtifact(groupId.trim(), artifactId.trim(), version.trim(), module, slot));
+            }
+        } finally {
+            zip.close();
+        }
+        if (result.size() == found && digestIndex != null) {
+            final MavenGAV gav = digestIndex.find(DigestIndex.sha1(jar));
+            if (gav != null)
+                result.add(new ModuleArtifact(gav.getGroupId(), gav.getArtifactId(), gav.getVersion(), module, slot));
+            else
+                logger.debug("Cannot identify " + jar + " of module " + module);
+        }
+    }
+
+    /**
+     * Reads the module of a directory and forks a task per sub-directory
+     */
+    private class ScanTask extends RecursiveTask<List<ModuleArtifact>> {
+        private static final long serialVersionUID = 1L;
+
+        private final File directory;
+
+        ScanTask(final File directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        protected List<ModuleArtifact> compute() {
+            final List<ModuleArtifact> result = new ArrayList<ModuleArtifact>();
+            final File[] files = directory.listFiles();
+            if (files == null)
+                return result;
+            Arrays.sort(files);
+            final List<ScanTask> tasks = new ArrayList<ScanTask>();
+            for (final File file : files) {
+                if (file.isDirectory())
+                    tasks.add(new ScanTask(file));
+                else if (file.getName().equals(MODULE_XML))
+                    result.addAll(readModule(file));
+            }
+            for (final ScanTask task : invokeAll(tasks))
+                result.addAll(task.join());
+            return result;
+        }
+    }
+
+    /**
+     * Maven coordinates found in a jar of a module
+     */
+    static class ModuleArtifact {
+        final String groupId;
+        final String artifactId;
+        final String version;
+        final String module;
+        final String slot;
+
+        ModuleArtifact(final String groupId, final String artifactId, final String version, final String module, final String slot) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+            this.module = module;
+            this.slot = slot;
+        }
+
+        boolean isMainSlot() {
+            return ModuleDependency.MAIN_SLOT.equals(slot);
+        }
+    }
+}
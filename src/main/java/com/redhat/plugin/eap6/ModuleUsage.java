@@ -0,0 +1,104 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * Relates the packages referenced by the compiled classes of the project to the jars of the module dependencies.
+ */
+public final class ModuleUsage {
+
+    private ModuleUsage() {
+    }
+
+    /**
+     * Returns the modules, in order of the map, none of whose artifacts contains a referenced package. Modules with an artifact that is not a
+     * resolved jar with classes cannot be judged and are never returned.
+     */
+    public static Set<String> findUnused(final Map<Artifact, String> modules, final Set<String> referencedPackages) throws IOException {
+        // module -> used (true), unused so far (false), or cannot be judged (null)
+        final Map<String, Boolean> usage = new HashMap<String, Boolean>();
+        for (final Map.Entry<Artifact, String> entry : modules.entrySet()) {
+            final String module = entry.getValue();
+            if (usage.containsKey(module) && !Boolean.FALSE.equals(usage.get(module)))
+                continue;
+            final File file = entry.getKey().getFile();
+            if (file == null || !file.isFile() || !file.getName().endsWith(".jar")) {
+                usage.put(module, null);
+                continue;
+            }
+            final Set<String> packages = JarPackageCache.getPackages(file);
+            if (packages.isEmpty()) {
+                usage.put(module, null);
+                continue;
+            }
+            boolean used = false;
+            for (final String p : packages) {
+                if (referencedPackages.contains(p)) {
+                    used = true;
+                    break;
+                }
+            }
+            usage.put(module, used);
+        }
+        final Set<String> unused = new LinkedHashSet<String>();
+        for (final String module : modules.values())
+            if (Boolean.FALSE.equals(usage.get(module)))
+                unused.add(module);
+        return unused;
+    }
+
+    /**
+     * Returns the referenced packages contained in the artifacts of each module. Modules with an artifact that is not a resolved jar with classes
+     * cannot be judged and are not contained.
+     */
+    public static Map<String, Set<String>> findUsedPackages(final Map<Artifact, String> modules, final Set<String> referencedPackages)
+            throws IOException {
+        final Map<String, Set<String>> result = new HashMap<String, Set<String>>();
+        final Set<String> unknown = new HashSet<String>();
+        for (final Map.Entry<Artifact, String> entry : modules.entrySet()) {
+            final String module = entry.getValue();
+            final File file = entry.getKey().getFile();
+            final Set<String> packages = file != null && file.isFile() && file.getName().endsWith(".jar") ? JarPackageCache.getPackages(file) : null;
+            if (packages == null || packages.isEmpty()) {
+                unknown.add(module);
+                continue;
+            }
+            Set<String> used = result.get(module);
+            if (used == null) {
+                used = new TreeSet<String>();
+                result.put(module, used);
+            }
+            for (final String p : packages)
+                if (referencedPackages.contains(p))
+                    used.add(p);
+        }
+        result.keySet().removeAll(unknown);
+        return result;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Memoizes GAV to module resolutions, including misses, for all mojo executions of a build. Results are kept per set of loaded dictionaries, so
+ * modules with different dictionaryFiles do not share results. The cache is split into segments with their own lock, each evicting its least
+ * recently used results when full, so concurrent executions of a parallel build rarely wait for each other.
+ */
+public class ResolutionCache {
+
+    static final int MAX_ENTRIES = 20000;
+    private static final int SEGMENTS = 16;
+
+    /**
+     * keyed by the execution request, which the cloned sessions of a parallel build share
+     */
+    private static final Map<Object, ResolutionCache> builds = new WeakHashMap<Object, ResolutionCache>();
+
+    private static final Object MISS = new Object();
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    private final ConcurrentMap<List<Dictionary>, Integer> layers = new ConcurrentHashMap<List<Dictionary>, Integer>();
+    private final AtomicInteger nextLayer = new AtomicInteger();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong lookupNanos = new AtomicLong();
+
+    public ResolutionCache() {
+        for (int i = 0; i < SEGMENTS; i++)
+            segments[i] = new Segment(MAX_ENTRIES / SEGMENTS);
+    }
+
+    /**
+     * Returns the cache of the build the session belongs to; without session a new cache
+     */
+    public static ResolutionCache forSession(final MavenSession session) {
+        if (session == null)
+            return new ResolutionCache();
+        final Object build = session.getRequest() != null ? session.getRequest() : session;
+        synchronized (builds) {
+            ResolutionCache cache = builds.get(build);
+            if (cache == null) {
+                cache = new ResolutionCache();
+                builds.put(build, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Same as {@link Dictionaries#find(Log, String, String, String)}, memoized
+     */
+    public DictItem find(final Log logger, final Dictionaries dictionaries, final String groupId, final String artifactId, final String version) {
+        final long start = System.nanoTime();
+        try {
+            final String key = layer(dictionaries) + "|" + groupId + ":" + artifactId + ":" + version;
+            final Segment segment = segments[(key.hashCode() & 0x7fffffff) % SEGMENTS];
+            Object result;
+            synchronized (segment) {
+                result = segment.get(key);
+            }
+            if (result != null) {
+                hits.incrementAndGet();
+                return result == MISS ? null : (DictItem) result;
+            }
+            misses.incrementAndGet();
+            final DictItem item = dictionaries.find(logger, groupId, artifactId, version);
+            synchronized (segment) {
+                segment.put(key, item == null ? MISS : item);
+            }
+            return item;
+        } finally {
+            lookupNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private int layer(final Dictionaries dictionaries) {
+        final List<Dictionary> key = dictionaries.getCacheKey();
+        final Integer layer = layers.get(key);
+        if (layer != null)
+            return layer;
+        final Integer created = nextLayer.getAndIncrement();
+        final Integer existing = layers.putIfAbsent(key, created);
+        return existing != null ? existing : created;
+    }
+
+    public String statistics() {
+        final long h = hits.get();
+        final long total = h + misses.get();
+        return total + " lookups, hit rate " + (total == 0 ? 0 : h * 100 / total) + "%, total lookup time " + lookupNanos.get() / 1000000 + " ms";
+    }
+
+    private static class Segment extends LinkedHashMap<String, Object> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        Segment(final int maxEntries) {
+            super(64, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Object> eldest) {
+            return size() > maxEntries;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Fork/join pool shared by all mojo executions of the JVM. Module builds running concurrently (<code>mvn -T</code>) split their work among the
+ * same threads, one per processor, instead of each starting a pool of its own. The worker threads are daemons and end when idle.
+ */
+public final class SharedForkJoinPool {
+
+    private static final ForkJoinPool pool = new ForkJoinPool();
+
+    private SharedForkJoinPool() {
+    }
+
+    public static ForkJoinPool get() {
+        return pool;
+    }
+}
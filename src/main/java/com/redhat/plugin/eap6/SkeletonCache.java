@@ -0,0 +1,155 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+/**
+ * Process-wide cache of parsed skeletons, shared by all mojo executions of a reactor. Files are keyed by canonical path and reparsed when size or
+ * last-modified time change; the bundled skeletons are parsed once per JVM. Each execution gets a deep copy to merge into, the parsed template is
+ * never handed out. A copy does not know the encoding declared by the skeleton, see {@link #getEncoding(Document)}.
+ */
+public final class SkeletonCache {
+
+    static final int MAX_ENTRIES = 32;
+
+    private static final Map<String, CachedSkeleton> cache = new LinkedHashMap<String, CachedSkeleton>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, CachedSkeleton> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private static final String ENCODING = SkeletonCache.class.getName() + ".encoding";
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private SkeletonCache() {
+    }
+
+    /**
+     * Returns a copy of the skeleton in the file, parsing it if it is not cached or has changed
+     */
+    public static Document get(final File file) throws IOException, SAXException {
+        final String key = file.getCanonicalPath();
+        final long size = file.length();
+        final long lastModified = file.lastModified();
+        CachedSkeleton entry;
+        synchronized (cache) {
+            entry = cache.get(key);
+        }
+        if (entry != null && entry.size == size && entry.lastModified == lastModified) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            entry = new CachedSkeleton(XmlSupport.documentBuilder().parse(file), size, lastModified);
+            synchronized (cache) {
+                cache.put(key, entry);
+            }
+        }
+        return entry.copy();
+    }
+
+    /**
+     * Returns a copy of the skeleton in a classpath-resource, which is parsed once
+     */
+    public static Document getResource(final String name) throws IOException, SAXException {
+        final String key = "classpath:" + name;
+        CachedSkeleton entry;
+        synchronized (cache) {
+            entry = cache.get(key);
+        }
+        if (entry != null) {
+            hits.incrementAndGet();
+            return entry.copy();
+        }
+        misses.incrementAndGet();
+        final InputStream stream = SkeletonCache.class.getResourceAsStream(name);
+        if (stream == null)
+            throw new IOException("Resource " + name + " not found");
+        try {
+            entry = new CachedSkeleton(XmlSupport.documentBuilder().parse(stream), -1, -1);
+        } finally {
+            stream.close();
+        }
+        synchronized (cache) {
+            cache.put(key, entry);
+        }
+        return entry.copy();
+    }
+
+    /**
+     * Returns the encoding declared by the skeleton of a copy, or null if it declares none. The serializer has to be given this encoding
+     * explicitly: it would use the encoding of the document, which is lost when copying.
+     */
+    public static String getEncoding(final Document doc) {
+        final Object encoding = doc.getUserData(ENCODING);
+        return encoding != null ? (String) encoding : doc.getXmlEncoding();
+    }
+
+    public static void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+
+    public static String statistics() {
+        final int size;
+        synchronized (cache) {
+            size = cache.size();
+        }
+        return hits.get() + " hits, " + misses.get() + " misses, " + size + " cached skeletons";
+    }
+
+    private static class CachedSkeleton {
+        private final Document template;
+        private final String encoding;
+        final long size;
+        final long lastModified;
+
+        CachedSkeleton(final Document template, final long size, final long lastModified) {
+            this.template = template;
+            this.encoding = template.getXmlEncoding();
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Even reading a DOM is not thread-safe, the parser expands its nodes lazily, so copies are made one at a time
+         */
+        synchronized Document copy() {
+            final Document copy = (Document) template.cloneNode(true);
+            if (encoding != null)
+                copy.setUserData(ENCODING, encoding, null);
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,550 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Merges module dependencies into a jboss-deployment-structure.xml or module.xml skeleton with StAX, without building a DOM. The skeleton is
+ * scanned once for the sections and modules it already declares, then copied event by event to the output, and the missing elements are
+ * written where the DOM based merge puts them. Skeleton content that is not merged into passes through unchanged.
+ */
+public class StreamingDescriptorWriter {
+
+    private static final String INDENT = "    ";
+
+    private final String rootElement;
+    private final String encoding;
+    private final Section main = new Section(null);
+    private final Map<String, Section> subDeployments = new LinkedHashMap<String, Section>();
+    private String moduleName;
+    private String resourceRootPath;
+    private List<String> modules = Collections.emptyList();
+
+    // found in the skeleton of a module.xml: indexes among the children of the root or of resources, -1 if missing
+    private int resourcesIndex;
+    private int resourceRootParent;
+    private int resourceRootIndex;
+
+    /**
+     * @param rootElement
+     *            the expected root element, <code>jboss-deployment-structure</code> or <code>module</code>
+     * @param encoding
+     *            of the output; UTF-8 if null
+     */
+    public StreamingDescriptorWriter(final String rootElement, final String encoding) {
+        this.rootElement = rootElement;
+        this.encoding = encoding != null ? encoding : "UTF-8";
+    }
+
+    /**
+     * Adds a module dependency to the deployment, or to the module of a module.xml, unless the skeleton declares it
+     *
+     * @param attributes
+     *            further attributes after the name, like slot and export
+     * @param includePaths
+     *            paths of an imports filter, or null
+     */
+    public void addModule(final String name, final Map<String, String> attributes, final Collection<String> includePaths) {
+        main.add(name, attributes, includePaths);
+    }
+
+    /**
+     * Adds a sub-deployment section, which is created with an empty dependencies element if the skeleton has none
+     */
+    public void addSubDeployment(final String subDeployment) {
+        if (!subDeployments.containsKey(subDeployment))
+            subDeployments.put(subDeployment, new Section(subDeployment));
+    }
+
+    /**
+     * Adds a module dependency to a sub-deployment, unless the skeleton declares it
+     */
+    public void addModule(final String subDeployment, final String name, final Map<String, String> attributes, final Collection<String> includePaths) {
+        addSubDeployment(subDeployment);
+        subDeployments.get(subDeployment).add(name, attributes, includePaths);
+    }
+
+    /**
+     * Sets the name of the module of a module.xml
+     */
+    public void setModuleName(final String moduleName) {
+        this.moduleName = moduleName;
+    }
+
+    /**
+     * Sets the path of the resource-root of a module.xml
+     */
+    public void setResourceRoot(final String path) {
+        this.resourceRootPath = path;
+    }
+
+    /**
+     * The modules of the deployment, or of the module of a module.xml, after {@link #write(InputStream, OutputStream)}: the declared ones and the
+     * added ones, in document order
+     */
+    public List<String> getModules() {
+        return modules;
+    }
+
+    /**
+     * Writes the skeleton with the merged modules
+     */
+    public void write(final InputStream skeleton, final OutputStream out) throws IOException, XMLStreamException {
+        final byte[] content = IOUtils.toByteArray(skeleton);
+        final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(new ByteArrayInputStream(content));
+        final boolean moduleXml = "module".equals(rootElement);
+        try {
+            scan(reader, moduleXml);
+        } finally {
+            reader.close();
+        }
+        final List<String> result = new ArrayList<String>(main.existing);
+        for (final String module : main.names)
+            if (!main.existing.contains(module))
+                result.add(module);
+
+        reader = inputFactory.createXMLStreamReader(new ByteArrayInputStream(content));
+        final XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, encoding);
+        try {
+            new Copy(reader, writer, moduleXml).run();
+            writer.flush();
+        } finally {
+            writer.close();
+            reader.close();
+        }
+        modules = result;
+    }
+
+    /**
+     * Finds the sections and the declared modules, like the DOM merge: the first matching element wins
+     */
+    private void scan(final XMLStreamReader reader, final boolean moduleXml) throws XMLStreamException {
+        main.reset();
+        for (final Section section : subDeployments.values())
+            section.reset();
+        resourcesIndex = -1;
+        resourceRootParent = -1;
+        resourceRootIndex = -1;
+        int depth = 0;
+        int rootChild = -1;
+        int child = -1;
+        String top = null;
+        Section section = null;
+        boolean inDependencies = false;
+        while (reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT)
+                continue;
+            depth++;
+            final String name = reader.getLocalName();
+            if (depth == 1) {
+                if (!rootElement.equals(name))
+                    throw new XMLStreamException("Root element is not " + rootElement, reader.getLocation());
+            } else if (depth == 2) {
+                rootChild++;
+                child = -1;
+                top = name;
+                section = null;
+                if (moduleXml) {
+                    if ("dependencies".equals(name) && main.dependenciesIndex < 0) {
+                        main.dependenciesIndex = rootChild;
+                        section = main;
+                    } else if ("resources".equals(name) && resourcesIndex < 0) {
+                        resourcesIndex = rootChild;
+                    }
+                } else if ("deployment".equals(name) && main.elementIndex < 0) {
+                    main.elementIndex = rootChild;
+                    section = main;
+                } else if ("sub-deployment".equals(name)) {
+                    final Section sub = subDeployments.get(reader.getAttributeValue(null, "name"));
+                    if (sub != null && sub.elementIndex < 0) {
+                        sub.elementIndex = rootChild;
+                        section = sub;
+                    }
+                }
+                inDependencies = moduleXml && section != null;
+            } else if (depth == 3) {
+                child++;
+                if (moduleXml) {
+                    if (inDependencies && "module".equals(name))
+                        main.existing.add(reader.getAttributeValue(null, "name"));
+                    else if ("resources".equals(top) && "resource-root".equals(name) && resourceRootIndex < 0) {
+                        resourceRootParent = rootChild;
+                        resourceRootIndex = child;
+                    }
+                } else if (section != null) {
+                    if ("dependencies".equals(name) && section.dependenciesIndex < 0)
+                        section.dependenciesIndex = child;
+                    inDependencies = section.dependenciesIndex == child;
+                }
+            } else if (depth == 4 && !moduleXml && inDependencies && "module".equals(name)) {
+                section.existing.add(reader.getAttributeValue(null, "name"));
+            }
+        }
+        if (moduleXml && resourceRootIndex < 0)
+            resourceRootParent = resourcesIndex;
+    }
+
+    /**
+     * Copies the skeleton and writes the missing elements
+     */
+    private class Copy {
+        private final XMLStreamReader reader;
+        private final XMLStreamWriter writer;
+        private final boolean moduleXml;
+
+        private final List<String> indents = new ArrayList<String>();
+        private String pending;
+        private int depth;
+        private int rootChild = -1;
+        private int child = -1;
+        private Section section;
+
+        Copy(final XMLStreamReader reader, final XMLStreamWriter writer, final boolean moduleXml) {
+            this.reader = reader;
+            this.writer = writer;
+            this.moduleXml = moduleXml;
+        }
+
+        void run() throws XMLStreamException {
+            writer.writeStartDocument(encoding, "1.0");
+            writer.writeCharacters("\n");
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    startElement();
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    endElement();
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    // whitespace around the root element is written with the prolog
+                    if (depth == 0)
+                        break;
+                    if (reader.isWhiteSpace()) {
+                        pending = pending == null ? reader.getText() : pending + reader.getText();
+                    } else {
+                        flush();
+                        writer.writeCharacters(reader.getText());
+                    }
+                    break;
+                case XMLStreamConstants.CDATA:
+                    flush();
+                    writer.writeCData(reader.getText());
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    flush();
+                    writer.writeComment(reader.getText());
+                    if (depth == 0)
+                        writer.writeCharacters("\n");
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    flush();
+                    writer.writeProcessingInstruction(reader.getPITarget(), reader.getPIData());
+                    if (depth == 0)
+                        writer.writeCharacters("\n");
+                    break;
+                case XMLStreamConstants.DTD:
+                    writer.writeDTD(reader.getText());
+                    writer.writeCharacters("\n");
+                    break;
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    flush();
+                    writer.writeEntityRef(reader.getLocalName());
+                    break;
+                case XMLStreamConstants.END_DOCUMENT:
+                    writer.writeEndDocument();
+                    break;
+                default:
+                    break;
+                }
+            }
+        }
+
+        private void startElement() throws XMLStreamException {
+            String indent = null;
+            if (pending != null && pending.indexOf('\n') >= 0)
+                indent = pending.substring(pending.lastIndexOf('\n') + 1);
+            flush();
+            depth++;
+            indents.add(indent != null ? indent : repeat(depth - 1));
+            final String name = reader.getLocalName();
+            Map<String, String> replace = null;
+            if (depth == 2) {
+                rootChild++;
+                child = -1;
+                section = null;
+                if (moduleXml) {
+                    if (rootChild == main.dependenciesIndex)
+                        section = main;
+                } else if (rootChild == main.elementIndex) {
+                    section = main;
+                } else {
+                    for (final Section sub : subDeployments.values())
+                        if (sub.elementIndex == rootChild)
+                            section = sub;
+                }
+            } else if (depth == 3) {
+                child++;
+                if (moduleXml && rootChild == resourceRootParent && child == resourceRootIndex && resourceRootPath != null)
+                    replace = Collections.singletonMap("path", resourceRootPath);
+            }
+            if (depth == 1 && moduleXml && moduleName != null)
+                replace = Collections.singletonMap("name", moduleName);
+            copyStartElement(replace);
+            if (depth == 1)
+                startRoot(name);
+        }
+
+        /**
+         * Writes the sections the DOM merge inserts as first children of the root
+         */
+        private void startRoot(final String name) throws XMLStreamException {
+            final String indent = indents.get(0) + INDENT;
+            if (moduleXml) {
+                if (resourcesIndex < 0) {
+                    final Node resources = new Node("resources");
+                    resources.children.add(resourceRoot());
+                    write(resources, indent);
+                }
+                if (main.dependenciesIndex < 0)
+                    write(main.dependencies(), indent);
+            } else if (main.elementIndex < 0) {
+                final Node deployment = new Node("deployment");
+                deployment.children.add(main.dependencies());
+                write(deployment, indent);
+            }
+        }
+
+        private void endElement() throws XMLStreamException {
+            final List<Node> insert = new ArrayList<Node>();
+            if (depth == 1 && !moduleXml) {
+                for (final Section sub : subDeployments.values()) {
+                    if (sub.elementIndex < 0) {
+                        final Node subEl = new Node("sub-deployment");
+                        subEl.attributes.put("name", sub.name != null ? sub.name : "");
+                        subEl.children.add(sub.dependencies());
+                        insert.add(subEl);
+                    }
+                }
+            } else if (depth == 2 && moduleXml) {
+                if (rootChild == resourcesIndex && resourceRootIndex < 0)
+                    insert.add(resourceRoot());
+                if (section != null)
+                    insert.addAll(section.missing());
+            } else if (depth == 2 && section != null && section.dependenciesIndex < 0) {
+                insert.add(section.dependencies());
+            } else if (depth == 3 && !moduleXml && section != null && child == section.dependenciesIndex) {
+                insert.addAll(section.missing());
+            }
+            final String indent = indents.remove(indents.size() - 1);
+            if (!insert.isEmpty()) {
+                for (final Node node : insert)
+                    write(node, indent + INDENT);
+                if (pending == null)
+                    pending = "\n" + indent;
+            }
+            flush();
+            writer.writeEndElement();
+            depth--;
+            if (depth == 1)
+                section = null;
+        }
+
+        private void copyStartElement(final Map<String, String> replace) throws XMLStreamException {
+            final String prefix = reader.getPrefix();
+            final String namespace = reader.getNamespaceURI();
+            if (namespace == null)
+                writer.writeStartElement(reader.getLocalName());
+            else
+                writer.writeStartElement(prefix == null ? "" : prefix, reader.getLocalName(), namespace);
+            for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                final String nsPrefix = reader.getNamespacePrefix(i);
+                if (nsPrefix == null || nsPrefix.length() == 0)
+                    writer.writeDefaultNamespace(reader.getNamespaceURI(i));
+                else
+                    writer.writeNamespace(nsPrefix, reader.getNamespaceURI(i));
+            }
+            final Set<String> replaced = new LinkedHashSet<String>();
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                final String attrNamespace = reader.getAttributeNamespace(i);
+                final String localName = reader.getAttributeLocalName(i);
+                String value = reader.getAttributeValue(i);
+                if (replace != null && (attrNamespace == null || attrNamespace.length() == 0) && replace.containsKey(localName)) {
+                    value = replace.get(localName);
+                    replaced.add(localName);
+                }
+                if (attrNamespace == null || attrNamespace.length() == 0)
+                    writer.writeAttribute(localName, value);
+                else
+                    writer.writeAttribute(reader.getAttributePrefix(i), attrNamespace, localName, value);
+            }
+            if (replace != null)
+                for (final Map.Entry<String, String> entry : replace.entrySet())
+                    if (!replaced.contains(entry.getKey()))
+                        writer.writeAttribute(entry.getKey(), entry.getValue());
+        }
+
+        private void flush() throws XMLStreamException {
+            if (pending != null) {
+                writer.writeCharacters(pending);
+                pending = null;
+            }
+        }
+
+        private void write(final Node node, final String indent) throws XMLStreamException {
+            writer.writeCharacters("\n" + indent);
+            if (node.children.isEmpty()) {
+                writer.writeEmptyElement(node.name);
+            } else {
+                writer.writeStartElement(node.name);
+            }
+            for (final Map.Entry<String, String> attribute : node.attributes.entrySet())
+                writer.writeAttribute(attribute.getKey(), attribute.getValue());
+            if (!node.children.isEmpty()) {
+                for (final Node child : node.children)
+                    write(child, indent + INDENT);
+                writer.writeCharacters("\n" + indent);
+                writer.writeEndElement();
+            }
+        }
+
+        private Node resourceRoot() {
+            final Node resourceRoot = new Node("resource-root");
+            if (resourceRootPath != null)
+                resourceRoot.attributes.put("path", resourceRootPath);
+            return resourceRoot;
+        }
+    }
+
+    private static String repeat(final int n) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++)
+            sb.append(INDENT);
+        return sb.toString();
+    }
+
+    /**
+     * Module dependencies of the deployment, a sub-deployment or a module, and where the skeleton declares them. Only the names and the given
+     * attributes and paths are kept; the elements are created while writing.
+     */
+    private static class Section {
+        final String name;
+        final Set<String> names = new LinkedHashSet<String>();
+        final Map<String, Map<String, String>> attributes = new HashMap<String, Map<String, String>>();
+        final Map<String, Collection<String>> includePaths = new HashMap<String, Collection<String>>();
+        final Set<String> existing = new LinkedHashSet<String>();
+        int elementIndex;
+        int dependenciesIndex;
+
+        Section(final String name) {
+            this.name = name;
+        }
+
+        void reset() {
+            existing.clear();
+            elementIndex = -1;
+            dependenciesIndex = -1;
+        }
+
+        void add(final String module, final Map<String, String> moduleAttributes, final Collection<String> paths) {
+            if (!names.add(module))
+                return;
+            if (moduleAttributes != null && !moduleAttributes.isEmpty())
+                attributes.put(module, moduleAttributes);
+            if (paths != null && !paths.isEmpty())
+                includePaths.put(module, paths);
+        }
+
+        List<Node> missing() {
+            final List<Node> result = new ArrayList<Node>();
+            for (final String module : names)
+                if (!existing.contains(module))
+                    result.add(module(module));
+            return result;
+        }
+
+        private Node module(final String module) {
+            final Node node = new Node("module");
+            node.attributes.put("name", module);
+            if (attributes.containsKey(module))
+                node.attributes.putAll(attributes.get(module));
+            if (includePaths.containsKey(module)) {
+                final Node imports = new Node("imports");
+                for (final String path : includePaths.get(module)) {
+                    final Node include = new Node("include");
+                    include.attributes.put("path", path);
+                    imports.children.add(include);
+                }
+                final Node exclude = new Node("exclude");
+                exclude.attributes.put("path", AbstractEAP6Mojo.EXCLUDE_ALL);
+                imports.children.add(exclude);
+                node.children.add(imports);
+            }
+            return node;
+        }
+
+        Node dependencies() {
+            final Node dependencies = new Node("dependencies");
+            dependencies.children.addAll(missing());
+            return dependencies;
+        }
+    }
+
+    private static class Node {
+        final String name;
+        final Map<String, String> attributes = new LinkedHashMap<String, String>();
+        final List<Node> children = new ArrayList<Node>();
+
+        Node(final String name) {
+            this.name = name;
+        }
+    }
+}
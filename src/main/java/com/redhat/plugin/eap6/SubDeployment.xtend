@@ -18,14 +18,14 @@
 
 package com.redhat.plugin.eap6
 
+import java.util.List
 import org.eclipse.xtend.lib.annotations.Accessors
-import org.w3c.dom.Document
 
 class SubDeployment {
 	@Accessors String groupId;
     @Accessors String artifactId;
     @Accessors String name;
-    @Accessors Document document;
+    @Accessors List<ModuleDependency> modules;
 
 	override public String toString() {
         return '''«groupId»:«artifactId»''';
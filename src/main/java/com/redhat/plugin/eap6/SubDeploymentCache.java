@@ -0,0 +1,208 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+/**
+ * Module dependencies declared by the jboss-subdeployment.xml of sub-deployment archives, persisted between builds. An entry is used without
+ * opening the archive while size and last-modified time of the archive are unchanged. Otherwise the archive's central directory is read, and the
+ * entry is still used if CRC-32 and size of the descriptor are unchanged. Archives without descriptor are remembered as well, so probing plain jars
+ * is cheap. Exploded directories are never cached. Thread-safe.
+ */
+public class SubDeploymentCache {
+
+    private static final String HEADER = "# eap6 sub-deployment cache 1";
+    private static final long NO_DESCRIPTOR = -1;
+
+    // canonical archive path -> record, sorted for a stable file
+    private final Map<String, CachedModules> entries = new TreeMap<String, CachedModules>();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger lookups = new AtomicInteger();
+    private boolean modified;
+
+    /**
+     * Loads a persisted cache; an empty cache if the file does not exist, has another version or is damaged
+     */
+    public static SubDeploymentCache load(final File file) throws IOException {
+        final SubDeploymentCache cache = new SubDeploymentCache();
+        if (!file.isFile())
+            return cache;
+        final BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line = in.readLine();
+            if (!HEADER.equals(line))
+                return cache;
+            while ((line = in.readLine()) != null) {
+                final String[] fields = line.split("\t", 6);
+                if (fields.length != 6)
+                    continue;
+                final long crc = Long.parseLong(fields[3]);
+                final List<ModuleDependency> modules = new ArrayList<ModuleDependency>();
+                for (final String module : fields[5].split(",")) {
+                    final String[] parts = module.split(":", -1);
+                    if (parts.length == 3)
+                        modules.add(new ModuleDependency(parts[0], parts[1], parts[2].indexOf('e') >= 0, parts[2].indexOf('o') >= 0));
+                }
+                cache.entries.put(fields[0], new CachedModules(Long.parseLong(fields[1]), Long.parseLong(fields[2]), crc, Long.parseLong(fields[4]),
+                        crc == NO_DESCRIPTOR ? null : Collections.unmodifiableList(modules)));
+            }
+        } catch (final NumberFormatException e) {
+            cache.entries.clear();
+        } finally {
+            in.close();
+        }
+        return cache;
+    }
+
+    /**
+     * Persists all entries; written to a temporary file first, so concurrent builds never read a partial file
+     */
+    public synchronized void save(final File file) throws IOException {
+        final File tmp = AtomicFiles.createTemp(file);
+        try {
+            final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8"));
+            try {
+                out.write(HEADER);
+                out.write('\n');
+                for (final Map.Entry<String, CachedModules> entry : entries.entrySet()) {
+                    final CachedModules cached = entry.getValue();
+                    out.write(entry.getKey() + "\t" + cached.size + "\t" + cached.lastModified + "\t" + cached.crc + "\t" + cached.descriptorSize
+                            + "\t");
+                    boolean first = true;
+                    for (final ModuleDependency module : cached.modules == null ? Collections.<ModuleDependency> emptyList() : cached.modules) {
+                        if (!first)
+                            out.write(',');
+                        out.write(module.getName() + ":" + module.getSlot() + ":" + (module.isExport() ? "e" : "") + (module.isOptional() ? "o" : ""));
+                        first = false;
+                    }
+                    out.write('\n');
+                }
+            } finally {
+                out.close();
+            }
+            AtomicFiles.replace(tmp, file);
+        } finally {
+            tmp.delete();
+        }
+        modified = false;
+    }
+
+    /**
+     * Has the cache changed since it was loaded or saved?
+     */
+    public synchronized boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * Number of archives whose module dependencies were taken from the cache
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Number of archives looked up
+     */
+    public int getLookups() {
+        return lookups.get();
+    }
+
+    /**
+     * Returns the module dependencies of the deployment in the descriptor of the archive or directory, or null if it has no descriptor
+     */
+    public List<ModuleDependency> getModules(final File file, final SubDeploymentReader reader) throws IOException, SAXException {
+        if (file.isDirectory()) {
+            final Document doc = reader.readDirectory(file);
+            return doc == null ? null : Collections.unmodifiableList(SubDeploymentReader.getModules(doc));
+        }
+        lookups.incrementAndGet();
+        final String key = file.getCanonicalPath();
+        final long size = file.length();
+        final long lastModified = file.lastModified();
+        CachedModules cached;
+        synchronized (this) {
+            cached = entries.get(key);
+        }
+        if (cached != null && cached.size == size && cached.lastModified == lastModified) {
+            hits.incrementAndGet();
+            return cached.modules;
+        }
+        final ZipFile zip = new ZipFile(file);
+        try {
+            final ZipEntry entry = SubDeploymentReader.findEntry(zip);
+            if (entry == null) {
+                synchronized (this) {
+                    entries.put(key, new CachedModules(size, lastModified, NO_DESCRIPTOR, NO_DESCRIPTOR, null));
+                    modified = true;
+                }
+                return null;
+            }
+            final List<ModuleDependency> modules;
+            if (cached != null && cached.modules != null && cached.crc == entry.getCrc() && cached.descriptorSize == entry.getSize()) {
+                hits.incrementAndGet();
+                modules = cached.modules;
+            } else {
+                modules = Collections.unmodifiableList(SubDeploymentReader.getModules(reader.read(zip, entry)));
+            }
+            synchronized (this) {
+                entries.put(key, new CachedModules(size, lastModified, entry.getCrc(), entry.getSize(), modules));
+                modified = true;
+            }
+            return modules;
+        } finally {
+            zip.close();
+        }
+    }
+
+    private static class CachedModules {
+        final long size;
+        final long lastModified;
+        final long crc;
+        final long descriptorSize;
+        final List<ModuleDependency> modules;
+
+        CachedModules(final long size, final long lastModified, final long crc, final long descriptorSize, final List<ModuleDependency> modules) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.crc = crc;
+            this.descriptorSize = descriptorSize;
+            this.modules = modules;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Reads the jboss-subdeployment.xml of a sub-deployment archive or exploded directory. Archives are opened as {@link ZipFile}, so the descriptor is
+ * found through the central directory and only its own bytes are inflated, wherever it is in the archive.
+ */
+public class SubDeploymentReader {
+
+    public static final String JBOSS_SUBDEPLOYMENT = "jboss-subdeployment.xml";
+
+    private static final String[] LOCATIONS = { "META-INF/" + JBOSS_SUBDEPLOYMENT, "WEB-INF/" + JBOSS_SUBDEPLOYMENT };
+
+    private final Log log;
+    private final String encoding;
+    private final boolean verbose;
+
+    /**
+     * @param encoding
+     *            charset of descriptors without encoding declaration, or null to detect it from the content
+     */
+    public SubDeploymentReader(final Log log, final String encoding, final boolean verbose) {
+        this.log = log;
+        this.encoding = encoding;
+        this.verbose = verbose;
+    }
+
+    /**
+     * Returns the descriptor of the archive or directory, or null if it has none
+     */
+    public Document read(final File file) throws IOException, SAXException {
+        if (file.isDirectory()) // inside Eclipse/m2e??
+            return readDirectory(file);
+        return readArchive(file);
+    }
+
+    public Document readArchive(final File file) throws IOException, SAXException {
+        log.debug("Read deployment-informations from archive <" + file + ">");
+        final ZipFile zip = new ZipFile(file);
+        try {
+            final ZipEntry entry = findEntry(zip);
+            return entry == null ? null : read(zip, entry);
+        } finally {
+            zip.close();
+        }
+    }
+
+    /**
+     * Parses the descriptor entry of an open archive
+     */
+    public Document read(final ZipFile zip, final ZipEntry entry) throws IOException, SAXException {
+        final InputStream in = zip.getInputStream(entry);
+        try {
+            return parse(entry.getSize() >= 0 ? IOUtils.toByteArray(in, entry.getSize()) : IOUtils.toByteArray(in));
+        } finally {
+            in.close();
+        }
+    }
+
+    public Document readDirectory(final File directory) throws IOException, SAXException {
+        log.debug("Read deployment-informations from directory <" + directory + ">");
+        final DirectoryScanner ds = new DirectoryScanner();
+        ds.setBasedir(directory);
+        ds.setIncludes(new String[] { "**/META-INF/" + JBOSS_SUBDEPLOYMENT, "**/meta-inf/" + JBOSS_SUBDEPLOYMENT, "**/WEB-INF/" + JBOSS_SUBDEPLOYMENT,
+                "**/web-inf/" + JBOSS_SUBDEPLOYMENT });
+        ds.scan();
+        final String[] fileNames = ds.getIncludedFiles();
+        log.debug("" + fileNames.length + " deployment-information files found");
+        if (fileNames.length == 0)
+            return null;
+        return parse(Files.readAllBytes(new File(directory, fileNames[0]).toPath()));
+    }
+
+    /**
+     * Returns the descriptor entry of the archive, or null. The usual locations are looked up directly, other ones in the central directory.
+     */
+    public static ZipEntry findEntry(final ZipFile zip) {
+        for (final String location : LOCATIONS) {
+            final ZipEntry entry = zip.getEntry(location);
+            if (entry != null)
+                return entry;
+        }
+        final Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            final ZipEntry entry = entries.nextElement();
+            final String name = entry.getName().toLowerCase(Locale.ENGLISH);
+            if (name.endsWith("meta-inf/" + JBOSS_SUBDEPLOYMENT) || name.endsWith("web-inf/" + JBOSS_SUBDEPLOYMENT))
+                return entry;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the module dependencies of the deployment element of a descriptor
+     */
+    public static List<ModuleDependency> getModules(final Document doc) {
+        final List<ModuleDependency> modules = new ArrayList<ModuleDependency>();
+        for (final Element deployment : children(doc.getDocumentElement(), "deployment"))
+            for (final Element dependencies : children(deployment, "dependencies"))
+                for (final Element el : children(dependencies, "module"))
+                    modules.add(new ModuleDependency(el.getAttribute("name"), el.getAttribute("slot"), "true".equals(el.getAttribute("export")), "true"
+                            .equals(el.getAttribute("optional"))));
+        return modules;
+    }
+
+    private static List<Element> children(final Element parent, final String localName) {
+        final List<Element> result = new ArrayList<Element>();
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling())
+            if (node instanceof Element && localName.equals(node.getLocalName()))
+                result.add((Element) node);
+        return result;
+    }
+
+    /**
+     * Parses the descriptor from its bytes, ignoring leading whitespace
+     */
+    protected Document parse(final byte[] buf) throws IOException, SAXException {
+        if (verbose && log.isDebugEnabled())
+            log.debug(encoding == null ? new String(buf, "UTF-8") : new String(buf, encoding));
+        int start = 0;
+        while (start < buf.length && (buf[start] == ' ' || buf[start] == '\t' || buf[start] == '\r' || buf[start] == '\n'))
+            start++;
+        final InputSource source = new InputSource(new ByteArrayInputStream(buf, start, buf.length - start));
+        if (encoding != null)
+            source.setEncoding(encoding);
+        return XmlSupport.documentBuilder().parse(source);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.redhat.plugin.eap6
+
+import java.util.ArrayList
+import java.util.List
+import java.util.Map
+import java.util.concurrent.ConcurrentHashMap
+import org.apache.maven.artifact.versioning.ComparableVersion
+import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException
+import org.apache.maven.artifact.versioning.Restriction
+import org.apache.maven.artifact.versioning.VersionRange
+import org.eclipse.xtend.lib.annotations.Accessors
+
+/**
+ * One restriction of a version-range entry like <code>[1.0,2.0)</code>; a null bound is unbounded
+ */
+class VersionInterval {
+	static final int MAX_CACHED_VERSIONS = 10000;
+	static final Map<String, ComparableVersion> versions = new ConcurrentHashMap<String, ComparableVersion>();
+
+	@Accessors final ComparableVersion lower;
+	@Accessors final boolean lowerInclusive;
+	@Accessors final ComparableVersion upper;
+	@Accessors final boolean upperInclusive;
+	@Accessors final DictItem item;
+
+	new(Restriction restriction, DictItem item) {
+		this.lower = if(restriction.lowerBound == null) null else parseVersion(restriction.lowerBound.toString);
+		this.lowerInclusive = restriction.lowerBoundInclusive;
+		this.upper = if(restriction.upperBound == null) null else parseVersion(restriction.upperBound.toString);
+		this.upperInclusive = restriction.upperBoundInclusive;
+		this.item = item;
+	}
+
+	/**
+	 * Is the version a range like <code>[1.0,2.0)</code>?
+	 */
+	def static boolean isRange(String version) {
+		return version != null && (version.startsWith("[") || version.startsWith("("));
+	}
+
+	/**
+	 * Returns the intervals of the version-range of the entry
+	 */
+	def static List<VersionInterval> of(DictItem item) throws InvalidVersionSpecificationException {
+		val List<VersionInterval> intervals = new ArrayList<VersionInterval>();
+		for (Object restriction : VersionRange.createFromVersionSpec(item.version).restrictions)
+			intervals.add(new VersionInterval(restriction as Restriction, item));
+		return intervals;
+	}
+
+	/**
+	 * Returns the parsed version, cached as the same versions are compared over and over
+	 */
+	def static ComparableVersion parseVersion(String version) {
+		var ComparableVersion parsed = versions.get(version);
+		if (parsed == null) {
+			if (versions.size >= MAX_CACHED_VERSIONS)
+				versions.clear();
+			parsed = new ComparableVersion(version);
+			versions.put(version, parsed);
+		}
+		return parsed;
+	}
+
+	/**
+	 * Is the version not below the lower bound?
+	 */
+	def boolean isAboveLower(ComparableVersion version) {
+		if (lower == null)
+			return true;
+		val int c = lower.compareTo(version);
+		return c < 0 || (c == 0 && lowerInclusive);
+	}
+
+	/**
+	 * Is the version not above the upper bound?
+	 */
+	def boolean isBelowUpper(ComparableVersion version) {
+		if (upper == null)
+			return true;
+		val int c = upper.compareTo(version);
+		return c > 0 || (c == 0 && upperInclusive);
+	}
+
+	/**
+	 * Orders by lower bound, unbounded first and inclusive before exclusive
+	 */
+	def int compareLower(VersionInterval other) {
+		if (lower == null || other.lower == null)
+			return (if(lower == null) -1 else 0) + (if(other.lower == null) 1 else 0);
+		val int c = lower.compareTo(other.lower);
+		if (c != 0 || lowerInclusive == other.lowerInclusive)
+			return c;
+		return if(lowerInclusive) -1 else 1;
+	}
+
+	/**
+	 * Does this interval overlap the next one in lower bound order?
+	 */
+	def boolean overlaps(VersionInterval next) {
+		if (upper == null || next.lower == null)
+			return true;
+		val int c = upper.compareTo(next.lower);
+		return c > 0 || (c == 0 && upperInclusive && next.lowerInclusive);
+	}
+}
@@ -0,0 +1,111 @@
+/*
+   Copyright 2013 Red Hat, Inc. and/or its affiliates.
+
+   This file is part of eap6 plugin.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package com.redhat.plugin.eap6;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.w3c.dom.ls.DOMImplementationLS;
+import org.w3c.dom.ls.LSSerializer;
+
+/**
+ * Document builders, serializers and compiled XPath expressions for concurrent mojo executions. None of them is thread-safe, so each thread gets
+ * its own, created on first use and reused until the execution releases it: in long-lived build JVMs (m2e, mvnd) the threads outlive the plugin
+ * class loader, which the thread-local objects would otherwise keep reachable.
+ */
+public final class XmlSupport {
+
+    private static final ThreadLocal<XmlSupport> current = new ThreadLocal<XmlSupport>() {
+        @Override
+        protected XmlSupport initialValue() {
+            return new XmlSupport();
+        }
+    };
+
+    private final DocumentBuilder documentBuilder;
+    private final DOMImplementationLS domImplementation;
+    private final LSSerializer serializer;
+    private final XPath xpath;
+    private final Map<String, XPathExpression> expressions = new HashMap<String, XPathExpression>();
+
+    private XmlSupport() {
+        try {
+            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            documentBuilder = factory.newDocumentBuilder();
+        } catch (final ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+        domImplementation = (DOMImplementationLS) documentBuilder.getDOMImplementation();
+        serializer = domImplementation.createLSSerializer();
+        serializer.getDomConfig().setParameter("format-pretty-print", Boolean.TRUE);
+        xpath = XPathFactory.newInstance().newXPath();
+        xpath.setNamespaceContext(new NamespaceResolver());
+    }
+
+    /**
+     * The namespace aware document builder of this thread
+     */
+    public static DocumentBuilder documentBuilder() {
+        final DocumentBuilder builder = current.get().documentBuilder;
+        builder.reset();
+        return builder;
+    }
+
+    /**
+     * The DOM implementation of the document builders, to create outputs for {@link #serializer()}
+     */
+    public static DOMImplementationLS domImplementation() {
+        return current.get().domImplementation;
+    }
+
+    /**
+     * The pretty-printing serializer of this thread
+     */
+    public static LSSerializer serializer() {
+        return current.get().serializer;
+    }
+
+    /**
+     * The expression compiled for this thread; the prefix <code>ns1</code> is bound to the namespace of module.xml
+     */
+    public static XPathExpression xpath(final String expression) throws XPathExpressionException {
+        final XmlSupport support = current.get();
+        XPathExpression compiled = support.expressions.get(expression);
+        if (compiled == null) {
+            compiled = support.xpath.compile(expression);
+            support.expressions.put(expression, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Drops the objects of this thread; to be called at the end of a mojo execution
+     */
+    public static void release() {
+        current.remove();
+    }
+}
@@ -0,0 +1,92 @@
+package com.redhat.plugin.eap6.test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.shared.artifact.filter.StrictPatternExcludesArtifactFilter;
+
+import com.redhat.plugin.eap6.ArtifactClassification;
+import com.redhat.plugin.eap6.ArtifactClassification.Category;
+import com.redhat.plugin.eap6.ArtifactClassifier;
+import com.redhat.plugin.eap6.ArtifactIndex;
+import com.redhat.plugin.eap6.DictItemBuilder;
+import com.redhat.plugin.eap6.Dictionaries;
+import com.redhat.plugin.eap6.Dictionary;
+import com.redhat.plugin.eap6.ResolutionCache;
+
+public class ArtifactClassifierTest extends TestCase {
+
+    private final Log log = new SystemStreamLog();
+
+    private static Artifact artifact(String groupId, String artifactId, String scope, String type) {
+        return new DefaultArtifact(groupId, artifactId, "1.0", scope, type, null, new DefaultArtifactHandler(type));
+    }
+
+    private ArtifactClassifier classifier() throws Exception {
+        Dictionaries dictionaries = new Dictionaries();
+        dictionaries.addDictionary(new Dictionary(DictItemBuilder.parse(new StringReader("org.example:*=org.example\norg.example:nomodule=\n"))));
+        return new ArtifactClassifier(log, ResolutionCache.forSession(null), dictionaries, Arrays.asList(Artifact.SCOPE_PROVIDED),
+                Arrays.asList("jar"), new StrictPatternExcludesArtifactFilter(Collections.singletonList("org.example:excluded")));
+    }
+
+    public void testCategories() throws Exception {
+        Artifact mapped = artifact("org.example", "mapped", Artifact.SCOPE_PROVIDED, "jar");
+        Artifact compile = artifact("org.example", "compile", Artifact.SCOPE_COMPILE, "jar");
+        Artifact war = artifact("org.example", "war", Artifact.SCOPE_PROVIDED, "war");
+        Artifact excluded = artifact("org.example", "excluded", Artifact.SCOPE_PROVIDED, "jar");
+        Artifact unknown = artifact("org.other", "unknown", Artifact.SCOPE_PROVIDED, "jar");
+        Artifact noModule = artifact("org.example", "nomodule", Artifact.SCOPE_PROVIDED, "jar");
+        Set<Artifact> dependencies = new LinkedHashSet<Artifact>(Arrays.asList(mapped, compile, war, excluded, unknown, noModule));
+
+        ArtifactClassification result = classifier().classify(dependencies);
+        assertEquals(Category.MAPPED, result.getCategory(mapped));
+        assertEquals(Category.SCOPE_MISMATCH, result.getCategory(compile));
+        assertEquals(Category.TYPE_MISMATCH, result.getCategory(war));
+        assertEquals(Category.EXCLUDED, result.getCategory(excluded));
+        assertEquals(Category.UNMAPPED, result.getCategory(unknown));
+        assertEquals(Category.UNMAPPED, result.getCategory(noModule));
+        assertEquals("org.example", result.getMapped().get(mapped));
+        assertEquals("org.example:*:*=org.example", result.getScopeMismatches().get(compile).toString());
+        assertEquals("org.example", result.getModuleName(excluded));
+        assertNull(result.getModuleName(unknown));
+
+        ArtifactIndex index = new ArtifactIndex(dependencies, result);
+        assertSame(war, index.find("org.example", "war"));
+        assertSame(war, index.find("org.example", "war", "1.0"));
+        assertNull(index.find("org.example", "war", "2.0"));
+        assertEquals(Arrays.asList(mapped, compile, war, excluded), index.findByModule("org.example"));
+        assertTrue(index.findByModule("org.other").isEmpty());
+        try {
+            result.getMapped().clear();
+            fail("result is modifiable");
+        } catch (UnsupportedOperationException e) {
+        }
+    }
+
+    public void testParallelClassificationKeepsOrder() throws Exception {
+        List<Artifact> dependencies = new ArrayList<Artifact>();
+        for (int i = 0; i < 1000; i++)
+            dependencies.add(artifact(i % 3 == 0 ? "org.other" : "org.example", "a" + i, i % 5 == 0 ? Artifact.SCOPE_COMPILE
+                    : Artifact.SCOPE_PROVIDED, "jar"));
+        ArtifactClassification result = classifier().classify(dependencies);
+        List<Artifact> expected = new ArrayList<Artifact>();
+        for (int i = 0; i < 1000; i++)
+            if (i % 3 != 0 && i % 5 != 0)
+                expected.add(dependencies.get(i));
+        assertEquals(expected, new ArrayList<Artifact>(result.getMapped().keySet()));
+        assertEquals(334, result.getUnmapped().size());
+        assertEquals(1000 - 334 - expected.size(), result.getScopeMismatches().size());
+    }
+}
@@ -0,0 +1,90 @@
+package com.redhat.plugin.eap6.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import com.redhat.plugin.eap6.CompiledDictionary;
+import com.redhat.plugin.eap6.DictItem;
+import com.redhat.plugin.eap6.DictItemBuilder;
+import com.redhat.plugin.eap6.Dictionaries;
+import com.redhat.plugin.eap6.Dictionary;
+
+public class CompiledDictionaryTest extends TestCase {
+
+    private final Log log = new SystemStreamLog();
+
+    private File compile(List<DictItem> items, String name) throws Exception {
+        File dir = new File("target/test-dictionaries");
+        dir.mkdirs();
+        File f = new File(dir, name + CompiledDictionary.EXTENSION);
+        CompiledDictionary.write(items, f);
+        return f;
+    }
+
+    public void testCompiledLookupMatchesTextDictionary() throws Exception {
+        List<DictItem> items = DictItemBuilder.parse(new InputStreamReader(getClass().getResourceAsStream("/eap6.dict")));
+        items = new ArrayList<DictItem>(items);
+        items.add(new DictItem("org.example", "versioned", "1.0", "org.example.one"));
+        items.add(new DictItem("org.example", "versioned", "2.0", "org.example.two"));
+        items.add(new DictItem("org.example", "versioned", "*", "org.example.any"));
+
+        File f = compile(items, "eap6");
+        assertTrue(CompiledDictionary.isCompiled(f));
+
+        Dictionaries compiled = new Dictionaries();
+        compiled.addDictionary(f);
+        assertTrue(compiled.getDictionaries().get(0) instanceof CompiledDictionary);
+        Dictionaries text = new Dictionaries();
+        text.addDictionary(new Dictionary(items));
+
+        for (DictItem item : items) {
+            String version = item.getVersion().equals("*") ? "3.3" : item.getVersion();
+            DictItem expected = text.find(log, item.getGroupId(), item.getArtifactId(), version);
+            DictItem actual = compiled.find(log, item.getGroupId(), item.getArtifactId(), version);
+            assertEquals(expected.toString(), actual.toString());
+        }
+        assertNull(compiled.find(log, "org.example", "unknown", "1.0"));
+        Dictionary dictionary = compiled.getDictionaries().get(0);
+        assertSame(dictionary.getBucket("org.example", "versioned"), dictionary.getBucket("org.example", "versioned"));
+        assertEquals(items.size(), compiled.getDictionaries().get(0).getDictionary().size());
+    }
+
+    public void testTextDictionaryIsNotCompiled() throws Exception {
+        File f = new File("target/test-dictionaries/plain.dict");
+        f.getParentFile().mkdirs();
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        raf.setLength(0);
+        raf.write("org.example:plain=org.example.plain\n".getBytes("UTF-8"));
+        raf.close();
+        assertFalse(CompiledDictionary.isCompiled(f));
+
+        Dictionaries dictionaries = new Dictionaries();
+        dictionaries.addDictionary(f);
+        assertEquals("org.example.plain", dictionaries.find(log, "org.example", "plain", "1.0").getModuleName());
+    }
+
+    public void testCorruptedFileIsRejected() throws Exception {
+        List<DictItem> items = new ArrayList<DictItem>();
+        items.add(new DictItem("org.example", "a", "*", "org.example.a"));
+        File f = compile(items, "corrupt");
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        raf.seek(raf.length() - 1);
+        raf.write('X');
+        raf.close();
+        try {
+            new CompiledDictionary(f);
+            fail("checksum not verified");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Checksum mismatch"));
+        }
+    }
+}
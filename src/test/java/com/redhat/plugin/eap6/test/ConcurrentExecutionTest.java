@@ -0,0 +1,151 @@
+package com.redhat.plugin.eap6.test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.xpath.XPathConstants;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.sonatype.plexus.build.incremental.DefaultBuildContext;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import com.redhat.plugin.eap6.ArtifactIndex;
+import com.redhat.plugin.eap6.EAP6DeploymentStructureMojo;
+import com.redhat.plugin.eap6.ModuleDependency;
+import com.redhat.plugin.eap6.SubDeployment;
+import com.redhat.plugin.eap6.XmlSupport;
+
+/**
+ * Runs many executions of the deployment structure mojo concurrently, like <code>mvn -T 2C</code>, and compares their descriptors with the ones of
+ * sequential executions
+ */
+public class ConcurrentExecutionTest extends TestCase {
+
+    private static final int EXECUTIONS = 200;
+    private static final int THREADS = 8;
+
+    private File base;
+    private File skeletonDir;
+
+    private static class Mojo extends EAP6DeploymentStructureMojo {
+        private final List<SubDeployment> subdeployments;
+
+        Mojo(File destinationDir, File skeletonDir, Map<Artifact, String> moduleMap, List<SubDeployment> subdeployments) {
+            this.destinationDir = destinationDir;
+            this.skeletonDir = skeletonDir;
+            this.moduleDependencies = moduleMap;
+            this.artifactIndex = new ArtifactIndex(moduleMap.keySet(), null);
+            this.buildContext = new DefaultBuildContext();
+            this.subdeployments = subdeployments;
+            setLog(new SilentLog());
+        }
+
+        void run() throws Exception {
+            destinationDir.mkdirs();
+            generateDeploymentStructure(subdeployments);
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        base = new File("target/concurrent-execution-test");
+        FileUtils.deleteDirectory(base);
+        skeletonDir = new File(base, "skeleton");
+        skeletonDir.mkdirs();
+        FileUtils.writeStringToFile(new File(skeletonDir, "jboss-deployment-structure.xml"), "<jboss-deployment-structure>"
+                + "<deployment><dependencies><module name=\"org.shared\"/></dependencies></deployment>"
+                + "<sub-deployment name=\"web.war\"><dependencies/></sub-deployment></jboss-deployment-structure>", "UTF-8");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(base);
+    }
+
+    /**
+     * Execution i has its own set of modules, and half of the executions share the skeleton directory
+     */
+    private Mojo mojo(String run, int i) {
+        Map<Artifact, String> moduleMap = new LinkedHashMap<Artifact, String>();
+        for (int m = 0; m < 5 + i % 23; m++)
+            moduleMap.put(new DefaultArtifact("org.e" + i, "a" + m, VersionRange.createFromVersion("1.0"), "provided", "jar", null,
+                    new DefaultArtifactHandler("jar")), "org.e" + i + ".m" + m);
+        List<SubDeployment> subdeployments = new ArrayList<SubDeployment>();
+        for (int s = 0; s < i % 4; s++) {
+            SubDeployment sd = new SubDeployment();
+            sd.setName(s == 0 ? "web.war" : "sub" + s + ".jar");
+            List<ModuleDependency> modules = new ArrayList<ModuleDependency>();
+            for (int m = 0; m < 3 + s; m++)
+                modules.add(new ModuleDependency("org.e" + i + ".s" + s + ".m" + m, null, false, false));
+            sd.setModules(modules);
+            subdeployments.add(sd);
+        }
+        return new Mojo(new File(base, run + "/" + i), i % 2 == 0 ? skeletonDir : null, moduleMap, subdeployments);
+    }
+
+    private static File descriptor(File base, String run, int i) {
+        return new File(base, run + "/" + i + "/jboss-deployment-structure.xml");
+    }
+
+    public void testConcurrentExecutions() throws Exception {
+        for (int i = 0; i < EXECUTIONS; i++)
+            mojo("sequential", i).run();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int i = 0; i < EXECUTIONS; i++) {
+                final Mojo mojo = mojo("concurrent", i);
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        mojo.run();
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int i = 0; i < EXECUTIONS; i++) {
+            assertEquals("execution " + i, FileUtils.readFileToString(descriptor(base, "sequential", i), "UTF-8"),
+                    FileUtils.readFileToString(descriptor(base, "concurrent", i), "UTF-8"));
+            assertModules(i, descriptor(base, "concurrent", i));
+        }
+    }
+
+    private static void assertModules(int i, File descriptor) throws Exception {
+        Document doc = XmlSupport.documentBuilder().parse(descriptor);
+        NodeList deploymentModules = (NodeList) XmlSupport.xpath("/jboss-deployment-structure/deployment/dependencies/module").evaluate(doc,
+                XPathConstants.NODESET);
+        int shared = i % 2 == 0 ? 1 : 0;
+        assertEquals("execution " + i, shared + 5 + i % 23, deploymentModules.getLength());
+        for (int m = 0; m < 5 + i % 23; m++)
+            assertEquals("org.e" + i + ".m" + m, ((Element) deploymentModules.item(shared + m)).getAttribute("name"));
+        NodeList subModules = (NodeList) XmlSupport.xpath("/jboss-deployment-structure/sub-deployment/dependencies/module").evaluate(doc,
+                XPathConstants.NODESET);
+        int expected = 0;
+        for (int s = 0; s < i % 4; s++)
+            expected += 3 + s;
+        assertEquals("execution " + i, expected, subModules.getLength());
+    }
+}
@@ -0,0 +1,166 @@
+package com.redhat.plugin.eap6.test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.text.ParseException;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import com.redhat.plugin.eap6.CompiledDictionary;
+import com.redhat.plugin.eap6.DictItem;
+import com.redhat.plugin.eap6.DictItemBuilder;
+import com.redhat.plugin.eap6.Dictionaries;
+import com.redhat.plugin.eap6.Dictionary;
+import com.redhat.plugin.eap6.DictionaryParseException;
+import com.redhat.plugin.eap6.ResolutionCache;
+
+public class DictionariesTest extends TestCase {
+
+    private final Log log = new SystemStreamLog();
+
+    private static Dictionary dictionary(String name, String content) throws Exception {
+        return new Dictionary(name, DictItemBuilder.parse(new StringReader(content)));
+    }
+
+    private String module(Dictionaries dictionaries, String groupId, String artifactId, String version) {
+        DictItem item = dictionaries.find(log, groupId, artifactId, version);
+        return item == null ? null : item.getModuleName();
+    }
+
+    public void testPatternPrecedence() throws Exception {
+        Dictionaries dictionaries = new Dictionaries();
+        dictionaries.addDictionary(dictionary("first", "org.hibernate:*=org.hibernate\n" //
+                + "org.hibernate:hibernate-validator=org.hibernate.validator\n" //
+                + "org.jboss.resteasy:resteasy-*=org.jboss.resteasy.resteasy-jaxrs\n" //
+                + "org.jboss.*:*=org.jboss.generic\n"));
+        dictionaries.addDictionary(dictionary("second", "org.jboss.resteasy:resteasy-*=org.jboss.resteasy.override\n"));
+
+        assertEquals("org.hibernate", module(dictionaries, "org.hibernate", "hibernate-core", "4.2.0"));
+        assertEquals("org.hibernate.validator", module(dictionaries, "org.hibernate", "hibernate-validator", "4.3.0"));
+        assertEquals("org.jboss.resteasy.override", module(dictionaries, "org.jboss.resteasy", "resteasy-jaxb-provider", "2.3.6"));
+        assertEquals("org.jboss.generic", module(dictionaries, "org.jboss.resteasy", "jaxrs-api", "2.3.6"));
+        assertNull(module(dictionaries, "org.hibernate.javax", "hibernate-jpa", "1.0"));
+    }
+
+    public void testDictionariesChangeOnlyThroughAdd() throws Exception {
+        Dictionaries dictionaries = new Dictionaries();
+        dictionaries.addDictionary(dictionary("first", "org.hibernate:*=org.hibernate\n"));
+        assertEquals("org.hibernate", module(dictionaries, "org.hibernate", "hibernate-core", "4.2.0"));
+        try {
+            dictionaries.getDictionaries().add(dictionary("second", "org.hibernate:*=org.hibernate.other\n"));
+            fail("modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        dictionaries.addDictionary(dictionary("second", "org.hibernate:*=org.hibernate.other\n"));
+        assertEquals("org.hibernate.other", module(dictionaries, "org.hibernate", "hibernate-core", "4.2.0"));
+    }
+
+    public void testExactEntryInEarlierFileBeatsPattern() throws Exception {
+        Dictionaries dictionaries = new Dictionaries();
+        dictionaries.addDictionary(dictionary("first", "org.hibernate:hibernate-core=org.hibernate.core\n"));
+        dictionaries.addDictionary(dictionary("second", "org.hibernate:*=org.hibernate\n"));
+        assertEquals("org.hibernate.core", module(dictionaries, "org.hibernate", "hibernate-core", "4.2.0"));
+        assertEquals("org.hibernate", module(dictionaries, "org.hibernate", "hibernate-entitymanager", "4.2.0"));
+    }
+
+    public void testInvalidPatterns() throws Exception {
+        for (String line : new String[] { "org.*.x:a=m", "org.x:*-api=m", "org.x*:a=m" }) {
+            try {
+                DictItemBuilder.parse(line);
+                fail("accepted " + line);
+            } catch (ParseException e) {
+                // expected
+            }
+        }
+    }
+
+    public void testParseErrorLocation() throws Exception {
+        String content = "# header\norg.jboss:a:1.0=org.jboss.a\n\n  org.jboss:b:1.0 org.jboss.b\n";
+        try {
+            DictItemBuilder.parse("test.dict", new StringReader(content));
+            fail("missing '=' accepted");
+        } catch (DictionaryParseException e) {
+            assertEquals(4, e.getLine());
+            assertEquals(30, e.getColumn());
+            assertTrue(e.getMessage(), e.getMessage().startsWith("test.dict:4:30: "));
+        }
+        try {
+            DictItemBuilder.parse("test.dict", new StringReader("org.jboss:res*easy=x\r\n"));
+            fail("inner wildcard accepted");
+        } catch (DictionaryParseException e) {
+            assertEquals("test.dict:1:14: Wildcard '*' only allowed at the end of artifactId", e.getMessage());
+        }
+        List<DictItem> items = DictItemBuilder.parse(new StringReader("a:b=m#c\r\nc:d:2.0:jar=\ra:b:1.0=m=n"));
+        assertEquals(3, items.size());
+        assertEquals("*", items.get(0).getVersion());
+        assertNull(items.get(1).getModuleName());
+        assertEquals("2.0", items.get(1).getVersion());
+        assertEquals("m=n", items.get(2).getModuleName());
+    }
+
+    public void testVersionRanges() throws Exception {
+        Dictionaries dictionaries = new Dictionaries();
+        dictionaries.addDictionary(dictionary("ranges", "org.example:lib:(,1.0]=module.old\n" //
+                + "org.example:lib:(1.0,2.0)=module.a\n" //
+                + "org.example:lib:[2.0,3.0),[4.0,)=module.b\n" //
+                + "org.example:lib:2.5.1=module.exact\n" //
+                + "org.example:lib=module.any\n"));
+
+        assertEquals("module.old", module(dictionaries, "org.example", "lib", "0.9"));
+        assertEquals("module.old", module(dictionaries, "org.example", "lib", "1.0"));
+        assertEquals("module.a", module(dictionaries, "org.example", "lib", "1.0.1"));
+        assertEquals("module.a", module(dictionaries, "org.example", "lib", "1.9-SNAPSHOT"));
+        assertEquals("module.b", module(dictionaries, "org.example", "lib", "2.0"));
+        assertEquals("module.exact", module(dictionaries, "org.example", "lib", "2.5.1"));
+        assertEquals("module.any", module(dictionaries, "org.example", "lib", "3.5"));
+        assertEquals("module.b", module(dictionaries, "org.example", "lib", "10.0"));
+    }
+
+    public void testOverlappingRangesAreRejected() throws Exception {
+        try {
+            dictionary("overlap", "org.example:lib:[1.0,2.0]=module.a\norg.example:lib:[2.0,3.0)=module.b\n");
+            fail("overlapping ranges accepted");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("Overlapping version ranges"));
+        }
+        try {
+            DictItemBuilder.parse("org.example:lib:[2.0,1.0)=module.a");
+            fail("invalid range accepted");
+        } catch (ParseException e) {
+            // expected
+        }
+    }
+
+    public void testResolutionCache() throws Exception {
+        Dictionary shared = dictionary("shared", "org.example:a=module.a\n");
+        Dictionaries first = new Dictionaries();
+        first.addDictionary(shared);
+        Dictionaries second = new Dictionaries();
+        second.addDictionary(shared);
+        Dictionaries other = new Dictionaries();
+        other.addDictionary(dictionary("other", "org.example:a=module.other\n"));
+
+        ResolutionCache cache = ResolutionCache.forSession(null);
+        assertEquals("module.a", cache.find(log, first, "org.example", "a", "1.0").getModuleName());
+        assertEquals("module.a", cache.find(log, second, "org.example", "a", "1.0").getModuleName());
+        assertEquals("module.other", cache.find(log, other, "org.example", "a", "1.0").getModuleName());
+        assertNull(cache.find(log, first, "org.example", "b", "1.0"));
+        assertNull(cache.find(log, second, "org.example", "b", "1.0"));
+        assertTrue(cache.statistics(), cache.statistics().startsWith("5 lookups, hit rate 40%"));
+    }
+
+    public void testCompiledPatterns() throws Exception {
+        File f = new File("target/test-dictionaries/patterns" + CompiledDictionary.EXTENSION);
+        f.getParentFile().mkdirs();
+        CompiledDictionary.write(DictItemBuilder.parse(new StringReader("org.hibernate:*=org.hibernate\norg.x:y=org.x.y\n")), f);
+        Dictionaries dictionaries = new Dictionaries();
+        dictionaries.addDictionary(f);
+        assertEquals("org.hibernate", module(dictionaries, "org.hibernate", "hibernate-core", "4.2.0"));
+        assertEquals("org.x.y", module(dictionaries, "org.x", "y", "1.0"));
+    }
+}
@@ -0,0 +1,43 @@
+package com.redhat.plugin.eap6.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import com.redhat.plugin.eap6.Dictionary;
+import com.redhat.plugin.eap6.DictionaryCache;
+
+public class DictionaryCacheTest extends TestCase {
+
+    private File writeDictionary(String content) throws Exception {
+        File f = new File("target/test-dictionaries/cached.dict");
+        f.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(f);
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+        return f;
+    }
+
+    public void testCacheInvalidation() throws Exception {
+        DictionaryCache.clear();
+        File f = writeDictionary("org.example:a=org.example.a\n");
+        Dictionary first = DictionaryCache.get(f);
+        assertSame(first, DictionaryCache.get(f));
+        assertSame(DictionaryCache.getResource("/eap6.dict"), DictionaryCache.getResource("/eap6.dict"));
+
+        // touched, same content
+        f.setLastModified(f.lastModified() - 10000);
+        assertSame(first, DictionaryCache.get(f));
+
+        // changed content
+        writeDictionary("org.example:a=org.example.changed\n");
+        f.setLastModified(f.lastModified() - 20000);
+        Dictionary changed = DictionaryCache.get(f);
+        assertNotSame(first, changed);
+        assertEquals("org.example.changed", changed.find(new SystemStreamLog(), "org.example", "a", "1.0").getModuleName());
+        assertEquals("3 hits, 3 misses, 2 cached dictionaries", DictionaryCache.statistics());
+    }
+}
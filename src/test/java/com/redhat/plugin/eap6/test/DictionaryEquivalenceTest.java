@@ -0,0 +1,146 @@
+package com.redhat.plugin.eap6.test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import com.redhat.plugin.eap6.DictItem;
+import com.redhat.plugin.eap6.DictItemBuilder;
+import com.redhat.plugin.eap6.Dictionaries;
+import com.redhat.plugin.eap6.Dictionary;
+import com.redhat.plugin.eap6.MavenGAV;
+
+/**
+ * Compares the indexed dictionary lookup with a linear scan over all entries and the streaming parser with the line-splitting one
+ */
+public class DictionaryEquivalenceTest extends TestCase {
+
+    private static final int ENTRIES = 3000;
+    private static final int DICTIONARIES = 3;
+    private static final int ARTIFACTS = 400;
+
+    private final Log log = new SystemStreamLog();
+
+    private List<List<DictItem>> createItems() {
+        List<List<DictItem>> result = new ArrayList<List<DictItem>>();
+        for (int d = 0; d < DICTIONARIES; d++) {
+            List<DictItem> items = new ArrayList<DictItem>();
+            for (int i = 0; i < ENTRIES; i++) {
+                String g = "org.example.group" + (i % 100);
+                String a = "artifact-" + i;
+                items.add(new DictItem(g, a, "*", "module.d" + d + ".n" + i));
+                if (i % 10 == 0)
+                    items.add(new DictItem(g, a, "1.0." + i, "module.v" + d + ".n" + i));
+            }
+            result.add(items);
+        }
+        return result;
+    }
+
+    /**
+     * Lookup as done before the index: every dictionary, every entry
+     */
+    private static DictItem linearFind(List<List<DictItem>> dicts, String groupId, String artifactId, String version) {
+        for (int n = dicts.size() - 1; n >= 0; n--) {
+            DictItem match = null;
+            for (DictItem item : dicts.get(n)) {
+                if (item.getGroupId().equals(groupId) && item.getArtifactId().equals(artifactId)) {
+                    if (version.equals(item.getVersion()))
+                        match = item;
+                    else if (item.getVersion().equals("*")) {
+                        if (match == null)
+                            match = item;
+                    } else if (item.getBaseVersion().equals(MavenGAV.extractBaseVersion(version)))
+                        match = item;
+                }
+            }
+            if (match != null)
+                return match;
+        }
+        return null;
+    }
+
+    public void testEntriesShareStrings() throws Exception {
+        // a generated dictionary like a full modules tree: few groupIds and modules, many artifacts
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10000; i++)
+            sb.append("org.jboss.group").append(i % 200).append(":artifact-").append(i).append(":1.0.").append(i % 10).append("=org.jboss.module")
+                    .append(i % 500).append('\n');
+
+        Dictionary dictionary = new Dictionary("memory", DictItemBuilder.parse(new StringReader(sb.toString())));
+        List<DictItem> items = dictionary.getDictionary();
+        assertEquals(10000, items.size());
+        DictItem first = items.get(0);
+        DictItem same = items.get(1000);
+        assertEquals("org.jboss.group0:artifact-1000:1.0.0", same.getGroupId() + ":" + same.getArtifactId() + ":" + same.getVersion());
+        assertSame(first.getGroupId(), same.getGroupId());
+        assertSame(first.getVersion(), same.getVersion());
+        assertSame(first.getModuleName(), same.getModuleName());
+    }
+
+    public void testIndexedLookupMatchesLinearScan() {
+        List<List<DictItem>> items = createItems();
+        Dictionaries dictionaries = new Dictionaries();
+        for (List<DictItem> list : items)
+            dictionaries.addDictionary(new Dictionary(list));
+
+        String[][] gavs = new String[ARTIFACTS][];
+        for (int i = 0; i < ARTIFACTS; i++) {
+            int n = i * 7;
+            gavs[i] = new String[] { "org.example.group" + (n % 100), "artifact-" + n, "1.0." + n };
+        }
+        gavs[0] = new String[] { "org.example.unknown", "artifact-0", "1.0" };
+
+        for (String[] gav : gavs) {
+            DictItem expected = linearFind(items, gav[0], gav[1], gav[2]);
+            DictItem actual = dictionaries.find(log, gav[0], gav[1], gav[2]);
+            assertSame(String.valueOf(expected), expected, actual);
+        }
+    }
+
+    /**
+     * Parsing as done before the streaming parser: readLine, trim, substring and split per line
+     */
+    private static List<DictItem> legacyParse(String content) throws Exception {
+        BufferedReader br = new BufferedReader(new StringReader(content));
+        List<DictItem> list = new ArrayList<DictItem>();
+        String line;
+        while ((line = br.readLine()) != null) {
+            int index = line.indexOf('#');
+            if (index != -1)
+                line = line.substring(0, index);
+            line = line.trim();
+            if (line.length() == 0)
+                continue;
+            index = line.indexOf('=');
+            String module = line.substring(index + 1).trim();
+            String[] segments = line.substring(0, index).split(":");
+            list.add(new DictItem(segments[0].trim(), segments[1].trim(), segments.length > 2 ? segments[2].trim() : "*", module.length() == 0 ? null
+                    : module));
+        }
+        return list;
+    }
+
+    public void testParser100kLines() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            if (i % 50 == 0)
+                sb.append("# section ").append(i).append('\n');
+            sb.append("org.jboss.group").append(i % 200).append(":artifact-").append(i).append(i % 3 == 0 ? "" : ":1.0." + i % 10)
+                    .append(" = org.jboss.module").append(i % 500).append(i % 7 == 0 ? "  # comment\r\n" : "\n");
+        }
+        String content = sb.toString();
+
+        List<DictItem> expected = legacyParse(content);
+        List<DictItem> actual = DictItemBuilder.parse(new StringReader(content));
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+            assertEquals(expected.get(i).toString(), actual.get(i).toString());
+    }
+}
@@ -0,0 +1,94 @@
+package com.redhat.plugin.eap6.test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.sonatype.plexus.build.incremental.BuildContext;
+import org.sonatype.plexus.build.incremental.DefaultBuildContext;
+
+import com.redhat.plugin.eap6.InputFingerprint;
+
+public class InputFingerprintTest extends TestCase {
+
+    private final File dir = new File("target/test-fingerprint");
+
+    private final File fingerprintFile = new File(dir, "eap6.fingerprint");
+
+    private final File dictionary = new File(dir, "my.dict");
+
+    private final Artifact artifact = new DefaultArtifact("org.hibernate", "hibernate-core", VersionRange.createFromVersion("4.2.0"), "provided", "jar",
+            null, new DefaultArtifactHandler("jar"));
+
+    @Override
+    protected void setUp() throws Exception {
+        FileUtils.deleteDirectory(dir);
+        FileUtils.writeStringToFile(dictionary, "org.hibernate:hibernate-core=org.hibernate\n", "UTF-8");
+    }
+
+    private InputFingerprint fingerprint(String scope, BuildContext buildContext) throws Exception {
+        return new InputFingerprint(fingerprintFile).add("scopes", Arrays.asList(scope)).addArtifacts("dependencies", Collections.singleton(artifact))
+                .addFile("dictionary", dictionary, buildContext).addFile("skeleton", new File(dir, "missing.xml"), buildContext);
+    }
+
+    public void testUnchangedInputs() throws Exception {
+        InputFingerprint fingerprint = fingerprint("provided", null);
+        assertFalse(fingerprint.isUnchanged());
+        fingerprint.save();
+        assertTrue(fingerprint("provided", null).isUnchanged());
+
+        assertFalse(fingerprint("compile", null).isUnchanged());
+        artifact.setScope("compile");
+        assertFalse(fingerprint("provided", null).isUnchanged());
+        artifact.setScope("provided");
+        assertTrue(fingerprint("provided", null).isUnchanged());
+
+        FileUtils.writeStringToFile(dictionary, "org.hibernate:hibernate-core=org.hibernate.4\n", "UTF-8");
+        assertFalse(fingerprint("provided", null).isUnchanged());
+    }
+
+    public void testBuildContextDelta() throws Exception {
+        fingerprint("provided", null).save();
+        FileUtils.writeStringToFile(dictionary, "org.hibernate:hibernate-core=org.hibernate.4\n", "UTF-8");
+        final boolean[] delta = { false };
+        BuildContext ide = new DefaultBuildContext() {
+            @Override
+            public boolean isIncremental() {
+                return true;
+            }
+
+            @Override
+            public boolean hasDelta(File file) {
+                return delta[0];
+            }
+        };
+        // without delta the file is not read again
+        assertTrue(fingerprint("provided", ide).isUnchanged());
+        delta[0] = true;
+        assertFalse(fingerprint("provided", ide).isUnchanged());
+    }
+
+    public void testDirectoryArtifact() throws Exception {
+        File classes = new File(dir, "sub/target/classes");
+        File descriptor = new File(classes, "META-INF/jboss-subdeployment.xml");
+        FileUtils.writeStringToFile(descriptor, "<jboss-deployment-structure/>", "UTF-8");
+        Artifact sub = new DefaultArtifact("org.example", "sub", VersionRange.createFromVersion("1.0"), "provided", "ejb", null,
+                new DefaultArtifactHandler("ejb"));
+        sub.setFile(classes);
+        new InputFingerprint(fingerprintFile).addArtifacts("dependencies", Collections.singleton(sub)).save();
+        assertTrue(new InputFingerprint(fingerprintFile).addArtifacts("dependencies", Collections.singleton(sub)).isUnchanged());
+
+        // a changed file inside leaves size and time of the directory as they are
+        long lastModified = classes.lastModified();
+        FileUtils.writeStringToFile(descriptor, "<jboss-deployment-structure><deployment/></jboss-deployment-structure>", "UTF-8");
+        classes.setLastModified(lastModified);
+        assertFalse(new InputFingerprint(fingerprintFile).addArtifacts("dependencies", Collections.singleton(sub)).isUnchanged());
+    }
+}
@@ -0,0 +1,89 @@
+package com.redhat.plugin.eap6.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.Index;
+import org.jboss.jandex.IndexReader;
+
+import com.redhat.plugin.eap6.JandexIndexer;
+
+public class JandexIndexerTest extends TestCase {
+
+    private void copyClass(File dir, Class<?> c) throws Exception {
+        InputStream in = c.getResourceAsStream(c.getSimpleName() + ".class");
+        try {
+            FileUtils.writeByteArrayToFile(new File(dir, c.getName().replace('.', '/') + ".class"), IOUtils.toByteArray(in));
+        } finally {
+            in.close();
+        }
+    }
+
+    public void testIndexIsWrittenOnlyForChangedClasses() throws Exception {
+        File dir = new File("target/test-jandex");
+        FileUtils.deleteDirectory(dir);
+        File classes = new File(dir, "classes");
+        copyClass(classes, JandexIndexerTest.class);
+        copyClass(classes, ModuleGraphTest.class);
+        File fingerprint = new File(dir, "jandex.fingerprint");
+
+        JandexIndexer indexer = new JandexIndexer(classes);
+        assertEquals(2, indexer.index(fingerprint));
+        File indexFile = new File(classes, JandexIndexer.INDEX);
+        InputStream in = new FileInputStream(indexFile);
+        try {
+            Index index = new IndexReader(in).read();
+            assertNotNull(index.getClassByName(DotName.createSimple(JandexIndexerTest.class.getName())));
+            assertNotNull(index.getClassByName(DotName.createSimple(ModuleGraphTest.class.getName())));
+        } finally {
+            in.close();
+        }
+
+        assertEquals(-1, indexer.index(fingerprint));
+        copyClass(classes, ModuleUsageTest.class);
+        assertEquals(3, indexer.index(fingerprint));
+        indexFile.delete();
+        assertEquals(3, indexer.index(fingerprint));
+    }
+
+    /**
+     * Class files with invokedynamic (lambdas, method references, string concatenation since Java 9) have constant pool entries older Jandex
+     * releases reject
+     */
+    public void testClassWithInvokeDynamic() throws Exception {
+        File dir = new File("target/test-jandex-indy");
+        FileUtils.deleteDirectory(dir);
+        File classes = new File(dir, "classes");
+        File source = new File(dir, "src/indy/Lambdas.java");
+        FileUtils.writeStringToFile(source, "package indy;\n@Deprecated\npublic class Lambdas {\n"
+                + "    public Runnable task(final String name) { return () -> System.out.println(\"task \" + name); }\n"
+                + "    public java.util.function.Function<Object, String> format() { return String::valueOf; }\n}\n", "UTF-8");
+        classes.mkdirs();
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull("Tests need a JDK", compiler);
+        assertEquals(0, compiler.run(null, null, null, "-d", classes.getPath(), source.getPath()));
+        byte[] bytes = FileUtils.readFileToByteArray(new File(classes, "indy/Lambdas.class"));
+        assertTrue(new String(bytes, "ISO-8859-1").contains("LambdaMetafactory"));
+
+        assertEquals(1, new JandexIndexer(classes).index(new File(dir, "jandex.fingerprint")));
+        File indexFile = new File(classes, JandexIndexer.INDEX);
+        InputStream in = new FileInputStream(indexFile);
+        try {
+            IndexReader reader = new IndexReader(in);
+            Index index = reader.read();
+            assertEquals(JandexIndexer.INDEX_VERSION, reader.getIndexVersion());
+            assertEquals(1, index.getAnnotations(DotName.createSimple(Deprecated.class.getName())).size());
+        } finally {
+            in.close();
+        }
+    }
+}
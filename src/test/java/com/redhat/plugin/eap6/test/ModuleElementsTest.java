@@ -0,0 +1,140 @@
+package com.redhat.plugin.eap6.test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.ls.DOMImplementationLS;
+
+import com.redhat.plugin.eap6.EAP6DeploymentStructureMojo;
+import com.redhat.plugin.eap6.ModuleDependency;
+import com.redhat.plugin.eap6.ModuleElements;
+import com.redhat.plugin.eap6.SubDeployment;
+
+/**
+ * Merges module dependencies with the name index, and compares the result with one XPath evaluation per module
+ */
+public class ModuleElementsTest extends TestCase {
+
+    private static final int MODULES = 50;
+    private static final int SUBDEPLOYMENTS = 5;
+
+    private static final XPathFactory xpf = XPathFactory.newInstance();
+
+    private static class Mojo extends EAP6DeploymentStructureMojo {
+        void build(Document doc, Map<Artifact, String> moduleMap, List<SubDeployment> subdeployments) throws Exception {
+            buildDeploymentStructure(doc, moduleMap, subdeployments);
+        }
+    }
+
+    private static Document parse(String xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+    }
+
+    private static Document skeleton() throws Exception {
+        return parse("<jboss-deployment-structure><deployment><dependencies><module name=\"org.deployment.m7\" slot=\"2\"/></dependencies></deployment>"
+                + "<sub-deployment name=\"sub3.war\"><dependencies/></sub-deployment></jboss-deployment-structure>");
+    }
+
+    private static String serialize(Document doc) {
+        return ((DOMImplementationLS) doc.getImplementation()).createLSSerializer().writeToString(doc);
+    }
+
+    /**
+     * Merging as done before the index: an XPath compiled and evaluated per module and per sub-deployment
+     */
+    private static void legacyBuild(Document doc, Map<Artifact, String> moduleMap, List<SubDeployment> subdeployments) throws Exception {
+        Element root = doc.getDocumentElement();
+        Element deployment = (Element) xpf.newXPath().compile("/jboss-deployment-structure/deployment").evaluate(doc, XPathConstants.NODE);
+        Element depDependencies = (Element) xpf.newXPath().compile("dependencies").evaluate(deployment, XPathConstants.NODE);
+        legacyFill(doc, depDependencies, new ArrayList<String>(new LinkedHashSet<String>(moduleMap.values())));
+        for (SubDeployment sd : subdeployments) {
+            Element subEl = (Element) xpf.newXPath().compile("/jboss-deployment-structure/sub-deployment [@name='" + sd.getName() + "']")
+                    .evaluate(doc, XPathConstants.NODE);
+            if (subEl == null) {
+                subEl = doc.createElement("sub-deployment");
+                root.appendChild(subEl);
+                subEl.setAttribute("name", sd.getName());
+            }
+            Element subDependencies = (Element) xpf.newXPath().compile("dependencies").evaluate(subEl, XPathConstants.NODE);
+            if (subDependencies == null) {
+                subDependencies = doc.createElement("dependencies");
+                subEl.appendChild(subDependencies);
+            }
+            Set<String> modules = new LinkedHashSet<String>();
+            for (ModuleDependency module : sd.getModules()) {
+                if (moduleMap.values().contains(module.getName()))
+                    continue;
+                modules.add(module.getName());
+            }
+            legacyFill(doc, subDependencies, modules);
+        }
+    }
+
+    private static void legacyFill(Document doc, Element dependencies, Collection<String> modules) throws Exception {
+        for (String module : modules) {
+            if (xpf.newXPath().compile("module [@name=\"" + module + "\"]").evaluate(dependencies, XPathConstants.NODE) == null) {
+                Element moduleEl = doc.createElement("module");
+                moduleEl.setAttribute("name", module);
+                dependencies.appendChild(moduleEl);
+            }
+        }
+    }
+
+    public void testNamespacedSkeleton() throws Exception {
+        Document doc = parse("<module xmlns=\"urn:jboss:module:1.0\"><dependencies><module name=\"org.a\"/></dependencies></module>");
+        Element dependencies = (Element) doc.getDocumentElement().getFirstChild();
+        ModuleElements modules = new ModuleElements(dependencies);
+        assertTrue(modules.contains("org.a"));
+        assertNull(modules.add("org.a"));
+        assertNotNull(modules.add("org.b"));
+        assertNull(modules.add("org.b"));
+        assertSame(dependencies.getLastChild(), modules.get("org.b"));
+        assertEquals(2, dependencies.getChildNodes().getLength());
+        assertTrue(new ModuleElements(dependencies).contains("org.b"));
+    }
+
+    public void testMatchesXPathMerge() throws Exception {
+        Map<Artifact, String> moduleMap = new LinkedHashMap<Artifact, String>();
+        for (int i = 0; i < MODULES; i++)
+            moduleMap.put(new DefaultArtifact("org.deployment", "a" + i, VersionRange.createFromVersion("1.0"), "provided", "jar", null,
+                    new DefaultArtifactHandler("jar")), "org.deployment.m" + i);
+        List<SubDeployment> subdeployments = new ArrayList<SubDeployment>();
+        for (int s = 0; s < SUBDEPLOYMENTS; s++) {
+            SubDeployment sd = new SubDeployment();
+            sd.setGroupId("org.sub");
+            sd.setArtifactId("sub" + s);
+            sd.setName("sub" + s + ".war");
+            List<ModuleDependency> modules = new ArrayList<ModuleDependency>();
+            for (int i = 0; i < MODULES; i++)
+                modules.add(new ModuleDependency(i % 2 == 0 ? "org.deployment.m" + i : "org.sub" + s + ".m" + i, null, false, false));
+            sd.setModules(modules);
+            subdeployments.add(sd);
+        }
+
+        Document legacyDoc = skeleton();
+        legacyBuild(legacyDoc, moduleMap, subdeployments);
+        Document doc = skeleton();
+        new Mojo().build(doc, moduleMap, subdeployments);
+        assertEquals(serialize(legacyDoc), serialize(doc));
+    }
+}
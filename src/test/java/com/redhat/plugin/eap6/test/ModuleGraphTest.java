@@ -0,0 +1,107 @@
+package com.redhat.plugin.eap6.test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+import com.redhat.plugin.eap6.ModuleGraph;
+
+public class ModuleGraphTest extends TestCase {
+
+    private File root;
+
+    @Override
+    protected void setUp() throws Exception {
+        root = new File("target/test-module-graph");
+        FileUtils.deleteDirectory(root);
+        module(root, "javax.api");
+        module(root, "org.hibernate", "javax.api", "org.jboss.logging export=\"true\"", "org.dom4j");
+        module(root, "org.dom4j");
+        module(root, "a", "b export=\"true\"");
+        module(root, "b", "a export=\"true\"");
+        module(root, "c", "missing export=\"true\" optional=\"true\"");
+        module(new File(root, "system/layers/base"), "org.jboss.logging");
+        File alias = new File(root, "org/jboss/log/main/module.xml");
+        FileUtils.writeStringToFile(alias, "<module-alias xmlns=\"urn:jboss:module:1.1\" name=\"org.jboss.log\" target-name=\"org.jboss.logging\"/>",
+                "UTF-8");
+    }
+
+    private static File module(File base, String name, String... dependencies) throws Exception {
+        StringBuilder xml = new StringBuilder("<module xmlns=\"urn:jboss:module:1.1\" name=\"" + name + "\">\n  <dependencies>\n");
+        for (String dep : dependencies) {
+            int space = dep.indexOf(' ');
+            xml.append("    <module name=\"").append(space < 0 ? dep + "\"" : dep.substring(0, space) + "\"" + dep.substring(space)).append("/>\n");
+        }
+        xml.append("  </dependencies>\n</module>\n");
+        File f = new File(base, name.replace('.', '/') + "/main/module.xml");
+        FileUtils.writeStringToFile(f, xml.toString(), "UTF-8");
+        return f;
+    }
+
+    public void testPruneExportedModules() throws Exception {
+        ModuleGraph graph = ModuleGraph.forRoot(root);
+        assertSame(graph, ModuleGraph.forRoot(new File("target/../target/test-module-graph")));
+        assertTrue(graph.getExportedClosure("org.jboss.log", "main").contains("org.jboss.logging:main"));
+
+        Map<String, String> expected = new LinkedHashMap<String, String>();
+        expected.put("org.jboss.logging", "org.hibernate");
+        expected.put("a", "b");
+        // the alias is a module of its own, not exported by org.hibernate
+        assertEquals(expected, graph.prune(
+                Arrays.asList("org.jboss.logging", "org.hibernate", "org.dom4j", "javax.api", "a", "b", "c", "missing", "org.jboss.log"),
+                Collections.<String> emptyList(), "main"));
+
+        // modules exported by the parent deployment
+        assertEquals(Collections.singletonMap("org.jboss.logging", "org.hibernate"),
+                graph.prune(Arrays.asList("org.jboss.logging", "org.dom4j"), Arrays.asList("org.hibernate"), "main"));
+        // another slot
+        assertTrue(graph.prune(Arrays.asList("org.jboss.logging", "org.hibernate"), Collections.<String> emptyList(), "1.0").isEmpty());
+    }
+
+    public void testChangedModuleIsReadAgain() throws Exception {
+        ModuleGraph graph = ModuleGraph.forRoot(root);
+        assertEquals(1, graph.prune(Arrays.asList("org.jboss.logging", "org.hibernate"), Collections.<String> emptyList(), "main").size());
+        File f = module(root, "org.hibernate", "org.jboss.logging");
+        f.setLastModified(f.lastModified() + 2000);
+        assertTrue(graph.prune(Arrays.asList("org.jboss.logging", "org.hibernate"), Collections.<String> emptyList(), "main").isEmpty());
+    }
+
+    public void testFilteredReexportIsNotPruned() throws Exception {
+        FileUtils.writeStringToFile(new File(root, "org/facade/main/module.xml"), "<module xmlns=\"urn:jboss:module:1.1\" name=\"org.facade\">"
+                + "<dependencies><module name=\"org.dom4j\" export=\"true\"><exports><include path=\"org/dom4j\"/>"
+                + "<exclude path=\"**\"/></exports></module><module name=\"javax.api\" export=\"true\" services=\"export\"/>"
+                + "<module name=\"org.jboss.logging\" export=\"true\"/></dependencies></module>", "UTF-8");
+        ModuleGraph graph = ModuleGraph.forRoot(root);
+        assertTrue(graph.getModule("org.facade", "main").getDependencies().get(0).isFiltered());
+        assertFalse(graph.getModule("org.facade", "main").getDependencies().get(2).isFiltered());
+        // only the unfiltered re-export covers the direct dependency
+        assertEquals(Collections.singletonMap("org.jboss.logging", "org.facade"),
+                graph.prune(Arrays.asList("org.facade", "org.dom4j", "javax.api", "org.jboss.logging"), Collections.<String> emptyList(), "main"));
+    }
+
+    public void testLayersConfOrder() throws Exception {
+        module(new File(root, "system/layers/base"), "org.layered", "org.base");
+        module(new File(root, "system/layers/custom"), "org.layered", "org.custom export=\"true\"");
+        module(new File(root, "system/layers/unlisted"), "org.unlisted");
+        module(new File(root, "system/add-ons/extra"), "org.addon");
+        ModuleGraph graph = ModuleGraph.forRoot(root);
+        assertEquals("org.base", graph.getModule("org.layered", "main").getDependencies().get(0).getName());
+        assertNull(graph.getModule("org.unlisted", "main"));
+        assertNotNull(graph.getModule("org.addon", "main"));
+
+        // a new layers.conf gives a new graph
+        File conf = new File(root, "layers.conf");
+        FileUtils.writeStringToFile(conf, "layers=custom\n", "UTF-8");
+        conf.setLastModified(conf.lastModified() + 2000);
+        ModuleGraph layered = ModuleGraph.forRoot(root);
+        assertNotSame(graph, layered);
+        assertEquals("org.custom", layered.getModule("org.layered", "main").getDependencies().get(0).getName());
+        assertSame(layered, ModuleGraph.forRoot(root));
+    }
+}
@@ -0,0 +1,135 @@
+package com.redhat.plugin.eap6.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import com.redhat.plugin.eap6.DictItem;
+import com.redhat.plugin.eap6.DictItemBuilder;
+import com.redhat.plugin.eap6.DigestIndex;
+import com.redhat.plugin.eap6.ModuleScanner;
+
+public class ModuleScannerTest extends TestCase {
+
+    private File root;
+
+    @Override
+    protected void setUp() throws Exception {
+        root = new File("target/test-modules");
+        FileUtils.deleteDirectory(root);
+        module("org/hibernate/main", "org.hibernate", null, jar("hibernate-core-4.2.jar", "org.hibernate", "hibernate-core", "4.2.0.Final"));
+        module("org/hibernate/3/", "org.hibernate", "3", jar("hibernate-core-3.6.jar", "org.hibernate", "hibernate-core", "3.6.10.Final"));
+        module("org/jboss/resteasy/main", "org.jboss.resteasy", null, jar("resteasy-jaxrs.jar", "org.jboss.resteasy", "resteasy-jaxrs", "2.3.5"),
+                jar("resteasy-cdi.jar", "org.jboss.resteasy", "resteasy-cdi", "2.3.5"));
+        module("org/jboss/legacy/main", "org.jboss.legacy", null, jar("hibernate-core-3.6.jar", "org.hibernate", "hibernate-core", "3.6.10.Final"));
+        // the same jar in two modules of the main slot
+        module("org/apache/xalan/main", "org.apache.xalan", null, jar("serializer.jar", "xalan", "serializer", "2.7.1"));
+        module("org/apache/xerces/main", "org.apache.xerces", null, jar("serializer.jar", "xalan", "serializer", "2.7.1"));
+        new File(root, "javax/api/main").mkdirs();
+        FileUtils.writeStringToFile(new File(root, "javax/api/main/module.xml"),
+                "<module-alias xmlns=\"urn:jboss:module:1.1\" name=\"javax.api\" target-name=\"javax.api.v2\"/>", "UTF-8");
+    }
+
+    private File jar(String name, String groupId, String artifactId, String version) throws Exception {
+        File f = new File(root, name);
+        root.mkdirs();
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(f));
+        out.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+        out.write("Manifest-Version: 1.0\n".getBytes("UTF-8"));
+        out.putNextEntry(new ZipEntry("META-INF/maven/" + groupId + "/" + artifactId + "/pom.properties"));
+        out.write(("#Generated\nversion=" + version + "\ngroupId=" + groupId + "\nartifactId=" + artifactId + "\n").getBytes("UTF-8"));
+        out.putNextEntry(new ZipEntry("org/example/Some.class"));
+        out.write(new byte[] { (byte) 0xca, (byte) 0xfe });
+        out.close();
+        return f;
+    }
+
+    private void module(String dir, String name, String slot, File... jars) throws Exception {
+        File moduleDir = new File(root, dir);
+        moduleDir.mkdirs();
+        StringBuilder xml = new StringBuilder("<module xmlns=\"urn:jboss:module:1.1\" name=\"" + name + "\"" + (slot == null ? "" : " slot=\"" + slot + "\"")
+                + ">\n  <resources>\n");
+        for (File jar : jars) {
+            FileUtils.copyFile(jar, new File(moduleDir, jar.getName()));
+            xml.append("    <resource-root path=\"").append(jar.getName()).append("\"/>\n");
+        }
+        xml.append("    <resource-root path=\"missing.jar\"/>\n  </resources>\n</module>\n");
+        FileUtils.writeStringToFile(new File(moduleDir, "module.xml"), xml.toString(), "UTF-8");
+    }
+
+    public void testScanModules() throws Exception {
+        List<DictItem> items = new ModuleScanner(new SystemStreamLog(), 2).scan(root);
+        StringWriter out = new StringWriter();
+        ModuleScanner.write(items, "test", out);
+        assertEquals("# test\n\n" //
+                + "org.hibernate:hibernate-core=org.hibernate\n" //
+                + "org.hibernate:hibernate-core:3.6.10.Final=org.jboss.legacy\n" //
+                + "org.hibernate:hibernate-core:4.2.0.Final=org.hibernate\n" //
+                + "org.jboss.resteasy:resteasy-cdi=org.jboss.resteasy\n" //
+                + "org.jboss.resteasy:resteasy-jaxrs=org.jboss.resteasy\n" //
+                + "xalan:serializer=org.apache.xalan\n", out.toString());
+
+        // the output is a valid dictionary
+        assertEquals(items.size(), DictItemBuilder.parse(new StringReader(out.toString())).size());
+    }
+
+    private File plainJar(File f, String content) throws Exception {
+        f.getParentFile().mkdirs();
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(f));
+        // fixed time, so equal content gives equal digests
+        ZipEntry entry = new ZipEntry("org/example/" + content + ".class");
+        entry.setTime(0);
+        out.putNextEntry(entry);
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+        return f;
+    }
+
+    public void testIdentifyByChecksum() throws Exception {
+        File repo = new File("target/test-repo");
+        FileUtils.deleteDirectory(repo);
+        File nopom = plainJar(new File(repo, "org/example/nopom/1.0/nopom-1.0.jar"), "nopom");
+        File other = plainJar(new File(repo, "org/example/other/2.0/other-2.0.jar"), "other");
+        FileUtils.writeStringToFile(new File(other.getPath() + ".sha1"), DigestIndex.sha1(other) + "  other-2.0.jar\n", "US-ASCII");
+        plainJar(new File(repo, "org/example/other/2.0/other-2.0-sources.jar"), "sources");
+
+        module("org/example/nopom/main", "org.example.nopom", null, plainJar(new File(root, "nopom.jar"), "nopom"));
+
+        File indexFile = new File("target/test-repo.idx");
+        indexFile.delete();
+        DigestIndex index = DigestIndex.load(indexFile);
+        SystemStreamLog log = new SystemStreamLog();
+        assertEquals(2, index.update(repo, log, 2));
+        index.save(indexFile);
+
+        // reloaded index is reused, only changed jars are digested again
+        index = DigestIndex.load(indexFile);
+        assertEquals(2, index.size());
+        assertEquals(0, index.update(repo, log, 2));
+        assertFalse(index.isModified());
+        plainJar(nopom, "nopom");
+        nopom.setLastModified(nopom.lastModified() + 2000);
+        assertEquals(1, index.update(repo, log, 2));
+        assertTrue(index.isModified());
+
+        ModuleScanner scanner = new ModuleScanner(log, 2);
+        assertFalse(scan(scanner).contains("org.example:nopom"));
+        scanner.setDigestIndex(index);
+        assertTrue(scan(scanner).contains("org.example:nopom=org.example.nopom\n"));
+    }
+
+    private String scan(ModuleScanner scanner) throws Exception {
+        StringWriter out = new StringWriter();
+        ModuleScanner.write(scanner.scan(root), null, out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,121 @@
+package com.redhat.plugin.eap6.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+
+import com.redhat.plugin.eap6.ClassReferenceScanner;
+import com.redhat.plugin.eap6.JarPackageCache;
+import com.redhat.plugin.eap6.ModuleUsage;
+
+public class ModuleUsageTest extends TestCase {
+
+    private final File dir = new File("target/test-module-usage");
+
+    @Override
+    protected void setUp() throws Exception {
+        FileUtils.deleteDirectory(dir);
+        dir.mkdirs();
+        JarPackageCache.clear();
+    }
+
+    private byte[] classBytes(Class<?> c) throws Exception {
+        InputStream in = c.getResourceAsStream(c.getSimpleName() + ".class");
+        try {
+            return IOUtils.toByteArray(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private Artifact artifact(String artifactId, String... classes) throws Exception {
+        Artifact a = new DefaultArtifact("org.example", artifactId, "1.0", Artifact.SCOPE_PROVIDED, "jar", null, new DefaultArtifactHandler("jar"));
+        if (classes.length > 0) {
+            File jar = new File(dir, artifactId + ".jar");
+            ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+            for (String c : classes) {
+                out.putNextEntry(new ZipEntry(c));
+                out.write(new byte[] { 0 });
+            }
+            out.close();
+            a.setFile(jar);
+        }
+        return a;
+    }
+
+    public void testConstantPoolReferences() throws Exception {
+        Set<String> packages = new HashSet<String>();
+        ClassReferenceScanner.readClass(classBytes(getClass()), packages);
+        assertTrue(packages.toString(), packages.contains("junit.framework"));
+        assertTrue(packages.contains("org.apache.maven.artifact.handler"));
+        assertTrue(packages.contains("com.redhat.plugin.eap6"));
+        assertTrue(packages.contains("java.util.zip"));
+        assertFalse(packages.contains("org.apache.maven.plugin"));
+
+        // class files of a directory
+        FileUtils.writeByteArrayToFile(new File(dir, "classes/a/ModuleUsageTest.class"), classBytes(getClass()));
+        FileUtils.writeByteArrayToFile(new File(dir, "classes/b/ModuleGraphTest.class"), classBytes(ModuleGraphTest.class));
+        Set<String> scanned = ClassReferenceScanner.scan(new File(dir, "classes"));
+        assertTrue(scanned.containsAll(packages));
+        assertTrue(scanned.contains("com.redhat.plugin.eap6.test"));
+    }
+
+    public void testUnusedModules() throws Exception {
+        Map<Artifact, String> modules = new LinkedHashMap<Artifact, String>();
+        modules.put(artifact("junit", "junit/framework/TestCase.class"), "org.junit");
+        modules.put(artifact("unused", "org/unused/Foo.class", "META-INF/versions/9/org/unused9/Foo.class"), "org.unused");
+        modules.put(artifact("unused-too", "org/unused/Bar.class"), "org.unused.too");
+        modules.put(artifact("unresolved"), "org.unused.too");
+        modules.put(artifact("api", "org/api/Api.class"), "org.api");
+        modules.put(artifact("impl", "org/impl/Impl.class"), "org.api");
+
+        Set<String> referenced = new HashSet<String>();
+        Collections.addAll(referenced, "junit.framework", "org.impl", "java.lang");
+        assertEquals(Collections.singleton("org.unused"), ModuleUsage.findUnused(modules, referenced));
+
+        // the package sets are cached and persisted
+        File cacheFile = new File(dir, "packages.idx");
+        JarPackageCache.save(cacheFile);
+        assertTrue(cacheFile.isFile());
+        JarPackageCache.clear();
+        JarPackageCache.load(cacheFile);
+        assertTrue(FileUtils.readFileToString(cacheFile, "UTF-8").contains("org.unused,org.unused9"));
+        assertEquals(Collections.singleton("org.unused"), ModuleUsage.findUnused(modules, referenced));
+
+        // entries of deleted jars are dropped when saving
+        assertTrue(new File(dir, "unused-too.jar").delete());
+        JarPackageCache.getPackages(artifact("added", "org/added/Added.class").getFile());
+        JarPackageCache.save(cacheFile);
+        String saved = FileUtils.readFileToString(cacheFile, "UTF-8");
+        assertTrue(saved.contains("org.added"));
+        assertFalse(saved.contains("unused-too.jar"));
+    }
+
+    public void testUsedPackages() throws Exception {
+        Map<Artifact, String> modules = new LinkedHashMap<Artifact, String>();
+        modules.put(artifact("api", "org/api/Api.class", "org/api/spi/Spi.class", "org/api/internal/Impl.class"), "org.api");
+        modules.put(artifact("impl", "org/impl/Impl.class"), "org.api");
+        modules.put(artifact("unresolved"), "org.other");
+
+        Set<String> referenced = new HashSet<String>();
+        Collections.addAll(referenced, "org.api", "org.api.spi", "java.lang");
+        Map<String, Set<String>> used = ModuleUsage.findUsedPackages(modules, referenced);
+        assertEquals(Collections.singleton("org.api"), used.keySet());
+        assertEquals("[org.api, org.api.spi]", used.get("org.api").toString());
+    }
+}
@@ -0,0 +1,71 @@
+package com.redhat.plugin.eap6.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+
+import junit.framework.TestCase;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.ls.LSOutput;
+
+import com.redhat.plugin.eap6.SkeletonCache;
+import com.redhat.plugin.eap6.XmlSupport;
+
+public class SkeletonCacheTest extends TestCase {
+
+    private File writeSkeleton(String content, String encoding) throws Exception {
+        File f = new File("target/test-skeletons/jboss-deployment-structure.xml");
+        f.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(f);
+        out.write(content.getBytes(encoding));
+        out.close();
+        return f;
+    }
+
+    private static byte[] serialize(Document doc, String encoding) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LSOutput output = XmlSupport.domImplementation().createLSOutput();
+        output.setByteStream(out);
+        output.setEncoding(encoding);
+        XmlSupport.serializer().write(doc, output);
+        return out.toByteArray();
+    }
+
+    public void testCopiesAndInvalidation() throws Exception {
+        SkeletonCache.clear();
+        File f = writeSkeleton("<jboss-deployment-structure><deployment/></jboss-deployment-structure>", "UTF-8");
+        Document first = SkeletonCache.get(f);
+        first.getDocumentElement().appendChild(first.createElement("sub-deployment"));
+        Document second = SkeletonCache.get(f);
+        assertNotSame(first, second);
+        assertEquals(1, second.getDocumentElement().getChildNodes().getLength());
+
+        // changed content
+        writeSkeleton("<jboss-deployment-structure><deployment/><sub-deployment name=\"a.war\"/></jboss-deployment-structure>", "UTF-8");
+        f.setLastModified(f.lastModified() - 10000);
+        assertEquals(2, SkeletonCache.get(f).getDocumentElement().getChildNodes().getLength());
+
+        // the bundled skeleton is parsed once
+        Document bundled = SkeletonCache.getResource("/module.xml");
+        assertEquals("urn:jboss:module:1.0", bundled.getDocumentElement().getNamespaceURI());
+        assertNotSame(bundled, SkeletonCache.getResource("/module.xml"));
+        assertEquals("2 hits, 3 misses, 2 cached skeletons", SkeletonCache.statistics());
+    }
+
+    public void testCopyKeepsEncoding() throws Exception {
+        SkeletonCache.clear();
+        File f = writeSkeleton("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n<!-- M\u00fcller -->\n"
+                + "<jboss-deployment-structure><deployment/></jboss-deployment-structure>", "ISO-8859-1");
+        assertEquals("ISO-8859-1", SkeletonCache.getEncoding(SkeletonCache.get(f)));
+        Document copy = SkeletonCache.get(f);
+        assertEquals("ISO-8859-1", SkeletonCache.getEncoding(copy));
+        String written = new String(serialize(copy, SkeletonCache.getEncoding(copy)), "ISO-8859-1");
+        assertTrue(written, written.contains("encoding=\"ISO-8859-1\""));
+        assertTrue(written, written.contains("M\u00fcller"));
+
+        f = writeSkeleton("<jboss-deployment-structure><deployment/></jboss-deployment-structure>", "UTF-8");
+        f.setLastModified(f.lastModified() - 10000);
+        assertNull(SkeletonCache.getEncoding(SkeletonCache.get(f)));
+    }
+}
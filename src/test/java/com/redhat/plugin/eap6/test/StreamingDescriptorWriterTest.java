@@ -0,0 +1,237 @@
+package com.redhat.plugin.eap6.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamException;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import com.redhat.plugin.eap6.EAP6DeploymentStructureMojo;
+import com.redhat.plugin.eap6.ModuleDependency;
+import com.redhat.plugin.eap6.StreamingDescriptorWriter;
+import com.redhat.plugin.eap6.SubDeployment;
+
+/**
+ * Compares the descriptors merged by the streaming writer with the ones of the DOM merge
+ */
+public class StreamingDescriptorWriterTest extends TestCase {
+
+    private static final int MODULES = 2000;
+    private static final int SUBDEPLOYMENTS = 10;
+
+    private static class Mojo extends EAP6DeploymentStructureMojo {
+        Mojo(String defaultSlot, boolean exportModules) throws Exception {
+            setField("defaultSlot", defaultSlot);
+            setField("exportModules", exportModules);
+        }
+
+        private void setField(String name, Object value) throws Exception {
+            Field field = EAP6DeploymentStructureMojo.class.getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(this, value);
+        }
+
+        void build(Document doc, Map<Artifact, String> moduleMap, List<SubDeployment> subdeployments) throws Exception {
+            buildDeploymentStructure(doc, moduleMap, subdeployments);
+        }
+
+        void setModulePaths(Map<String, Set<String>> modulePaths) {
+            this.modulePaths = modulePaths;
+        }
+
+        void build(StreamingDescriptorWriter writer, Map<Artifact, String> moduleMap, List<SubDeployment> subdeployments) throws Exception {
+            buildDeploymentStructure(writer, moduleMap, subdeployments);
+        }
+    }
+
+    private static Document parse(byte[] xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+    }
+
+    /**
+     * Elements with their sorted attributes in document order, ignoring whitespace and namespaces: elements created by the DOM merge have none
+     */
+    private static String canonical(Document doc) {
+        StringBuilder sb = new StringBuilder();
+        canonical(doc.getDocumentElement(), "", sb);
+        return sb.toString();
+    }
+
+    private static void canonical(Element el, String indent, StringBuilder sb) {
+        sb.append(indent).append(el.getLocalName() != null ? el.getLocalName() : el.getNodeName());
+        NamedNodeMap attributes = el.getAttributes();
+        Map<String, String> sorted = new TreeMap<String, String>();
+        for (int i = 0; i < attributes.getLength(); i++)
+            if (!attributes.item(i).getNodeName().startsWith("xmlns"))
+                sorted.put(attributes.item(i).getNodeName(), attributes.item(i).getNodeValue());
+        sb.append(sorted).append('\n');
+        for (Node child = el.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element)
+                canonical((Element) child, indent + " ", sb);
+            else if (child.getNodeType() == Node.TEXT_NODE && !child.getNodeValue().trim().isEmpty())
+                sb.append(indent).append(" \"").append(child.getNodeValue().trim()).append("\"\n");
+        }
+    }
+
+    private static Map<Artifact, String> moduleMap(int count) {
+        Map<Artifact, String> moduleMap = new LinkedHashMap<Artifact, String>();
+        for (int i = 0; i < count; i++)
+            moduleMap.put(new DefaultArtifact("org.deployment", "a" + i, VersionRange.createFromVersion("1.0"), "provided", "jar", null,
+                    new DefaultArtifactHandler("jar")), "org.deployment.m" + i);
+        return moduleMap;
+    }
+
+    private static List<SubDeployment> subdeployments(int count, int modules) {
+        List<SubDeployment> subdeployments = new ArrayList<SubDeployment>();
+        for (int s = 0; s < count; s++) {
+            SubDeployment sd = new SubDeployment();
+            sd.setName("sub" + s + ".war");
+            List<ModuleDependency> dependencies = new ArrayList<ModuleDependency>();
+            for (int i = 0; i < modules; i++)
+                dependencies.add(new ModuleDependency(i % 2 == 0 ? "org.deployment.m" + i : "org.sub" + s + ".m" + i, null, false, false));
+            sd.setModules(dependencies);
+            subdeployments.add(sd);
+        }
+        return subdeployments;
+    }
+
+    private static byte[] bundledSkeleton() throws Exception {
+        InputStream in = EAP6DeploymentStructureMojo.class.getResourceAsStream("/jboss-deployment-structure.xml");
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int n; (n = in.read(buffer)) > 0;)
+                out.write(buffer, 0, n);
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private void assertSameMerge(String skeleton, Mojo mojo, Map<Artifact, String> moduleMap, List<SubDeployment> subdeployments) throws Exception {
+        assertSameMerge(skeleton.getBytes("UTF-8"), mojo, moduleMap, subdeployments);
+    }
+
+    private void assertSameMerge(byte[] skeleton, Mojo mojo, Map<Artifact, String> moduleMap, List<SubDeployment> subdeployments) throws Exception {
+        Document doc = parse(skeleton);
+        mojo.build(doc, moduleMap, subdeployments);
+        StreamingDescriptorWriter writer = new StreamingDescriptorWriter("jboss-deployment-structure", "UTF-8");
+        mojo.build(writer, moduleMap, subdeployments);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(new ByteArrayInputStream(skeleton), out);
+        assertEquals(canonical(doc), canonical(parse(out.toByteArray())));
+    }
+
+    public void testMatchesDomMerge() throws Exception {
+        Map<Artifact, String> moduleMap = moduleMap(10);
+        List<SubDeployment> subdeployments = subdeployments(3, 10);
+        Mojo mojo = new Mojo(null, false);
+        assertSameMerge(bundledSkeleton(), mojo, moduleMap, Collections.<SubDeployment> emptyList());
+        assertSameMerge(bundledSkeleton(), new Mojo("2", true), moduleMap, subdeployments);
+        assertSameMerge("<jboss-deployment-structure/>", mojo, moduleMap, subdeployments);
+        assertSameMerge("<jboss-deployment-structure><!-- c --><ear-subdeployments-isolated>true</ear-subdeployments-isolated>"
+                + "<deployment><exclusions><module name=\"org.x\"/></exclusions></deployment></jboss-deployment-structure>", mojo, moduleMap,
+                subdeployments);
+        assertSameMerge("<jboss-deployment-structure><deployment><dependencies>"
+                + "<module name=\"org.deployment.m3\" slot=\"7\"/></dependencies></deployment><sub-deployment name=\"sub1.war\"/>"
+                + "<sub-deployment name=\"sub2.war\"><dependencies><module name=\"org.sub2.m1\"/></dependencies></sub-deployment>"
+                + "</jboss-deployment-structure>", mojo, moduleMap, subdeployments);
+    }
+
+    /**
+     * Evaluates the import filter of a module dependency like JBoss modules: the first matching include or exclude decides, paths no filter
+     * matches are imported
+     */
+    private static boolean imports(Element module, String path) {
+        for (Node imports = module.getFirstChild(); imports != null; imports = imports.getNextSibling()) {
+            if (!"imports".equals(imports.getNodeName()))
+                continue;
+            for (Node filter = imports.getFirstChild(); filter != null; filter = filter.getNextSibling()) {
+                if (filter instanceof Element) {
+                    String glob = ((Element) filter).getAttribute("path");
+                    if (glob.equals("**") || glob.equals(path))
+                        return "include".equals(filter.getNodeName());
+                }
+            }
+        }
+        return true;
+    }
+
+    private static Element dependency(Document doc, String name) {
+        NodeList modules = doc.getElementsByTagName("module");
+        for (int i = 0; i < modules.getLength(); i++)
+            if (name.equals(((Element) modules.item(i)).getAttribute("name")))
+                return (Element) modules.item(i);
+        return null;
+    }
+
+    public void testPathFiltersExcludeUnusedPackages() throws Exception {
+        Map<Artifact, String> moduleMap = moduleMap(3);
+        Mojo mojo = new Mojo(null, false);
+        mojo.setModulePaths(Collections.singletonMap("org.deployment.m1", (Set<String>) new TreeSet<String>(Arrays.asList("org.used", "org.used.sub"))));
+        List<SubDeployment> none = Collections.<SubDeployment> emptyList();
+        assertSameMerge(bundledSkeleton(), mojo, moduleMap, none);
+
+        Document doc = parse(bundledSkeleton());
+        mojo.build(doc, moduleMap, none);
+        Element filtered = dependency(doc, "org.deployment.m1");
+        assertTrue(imports(filtered, "org/used"));
+        assertTrue(imports(filtered, "org/used/sub"));
+        assertFalse(imports(filtered, "org/unused"));
+        assertTrue(imports(dependency(doc, "org.deployment.m2"), "org/unused"));
+    }
+
+    public void testModuleDescriptor() throws Exception {
+        StreamingDescriptorWriter writer = new StreamingDescriptorWriter("module", null);
+        writer.setModuleName("org.project");
+        writer.setResourceRoot("project-1.0.jar");
+        writer.addModule("org.a", null, Arrays.asList("org/a", "org/a/b"));
+        writer.addModule("org.b", null, null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(new ByteArrayInputStream(("<module xmlns=\"urn:jboss:module:1.0\"><resources><resource-root/></resources>"
+                + "<dependencies><module name=\"org.b\"/></dependencies></module>").getBytes("UTF-8")), out);
+        assertEquals(Arrays.asList("org.b", "org.a"), writer.getModules());
+        assertEquals("module{name=org.project}\n" + " resources{}\n"
+                + "  resource-root{path=project-1.0.jar}\n" + " dependencies{}\n"
+                + "  module{name=org.b}\n" + "  module{name=org.a}\n"
+                + "   imports{}\n" + "    include{path=org/a}\n"
+                + "    include{path=org/a/b}\n" + "    exclude{path=**}\n", canonical(parse(out.toByteArray())));
+
+        try {
+            new StreamingDescriptorWriter("module", null).write(new ByteArrayInputStream("<jboss-deployment-structure/>".getBytes("UTF-8")),
+                    new ByteArrayOutputStream());
+            fail("Root element is not module");
+        } catch (XMLStreamException e) {
+            // expected
+        }
+    }
+
+    public void testManyModules() throws Exception {
+        assertSameMerge(bundledSkeleton(), new Mojo(null, false), moduleMap(MODULES), subdeployments(SUBDEPLOYMENTS, MODULES / SUBDEPLOYMENTS));
+    }
+}
@@ -0,0 +1,186 @@
+package com.redhat.plugin.eap6.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+import com.redhat.plugin.eap6.ModuleDependency;
+import com.redhat.plugin.eap6.SubDeploymentCache;
+import com.redhat.plugin.eap6.SubDeploymentReader;
+
+/**
+ * Reads descriptors from archives and directories, caches their module dependencies, and compares the central directory lookup with a sequential scan
+ */
+public class SubDeploymentReaderTest extends TestCase {
+
+    private static final String DESCRIPTOR = "\n  <?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<jboss-deployment-structure><deployment><dependencies>"
+            + "<module name=\"org.h\u00e9bernate\"/></dependencies></deployment></jboss-deployment-structure>";
+
+    private final Log log = new SystemStreamLog();
+
+    private final File dir = new File("target/test-subdeployments");
+
+    @Override
+    protected void setUp() throws Exception {
+        FileUtils.deleteDirectory(dir);
+        dir.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    /**
+     * Writes an archive with the given number of incompressible entries of 64 KB before the descriptor
+     */
+    private File createArchive(String name, String location, int entries) throws Exception {
+        File file = new File(dir, name);
+        ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(file));
+        try {
+            zos.setLevel(Deflater.BEST_SPEED);
+            Random random = new Random(17);
+            byte[] buf = new byte[64 * 1024];
+            for (int i = 0; i < entries; i++) {
+                random.nextBytes(buf);
+                zos.putNextEntry(new ZipEntry("WEB-INF/lib/content" + i + ".bin"));
+                zos.write(buf);
+                zos.closeEntry();
+            }
+            if (location != null) {
+                zos.putNextEntry(new ZipEntry(location));
+                zos.write(DESCRIPTOR.getBytes("UTF-8"));
+                zos.closeEntry();
+            }
+        } finally {
+            zos.close();
+        }
+        return file;
+    }
+
+    private static String moduleName(Document doc) {
+        return ((Element) doc.getElementsByTagName("module").item(0)).getAttribute("name");
+    }
+
+    /**
+     * Reading as done before the central directory lookup: walk all entries, then parse via a String
+     */
+    private static Document legacyRead(File file, String encoding) throws Exception {
+        ZipInputStream zis = new ZipInputStream(new FileInputStream(file));
+        try {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                String entryName = entry.getName().toLowerCase();
+                if (entryName.endsWith("meta-inf/jboss-subdeployment.xml") || entryName.endsWith("web-inf/jboss-subdeployment.xml")) {
+                    byte[] buf = IOUtils.toByteArray(zis);
+                    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+                    factory.setNamespaceAware(true);
+                    return factory.newDocumentBuilder().parse(new InputSource(new StringReader(new String(buf, encoding).trim())));
+                } else if (entry.getCompressedSize() >= 0)
+                    zis.skip(entry.getCompressedSize());
+            }
+            return null;
+        } finally {
+            zis.close();
+        }
+    }
+
+    public void testReadLocations() throws Exception {
+        SubDeploymentReader reader = new SubDeploymentReader(log, "UTF-8", false);
+        assertEquals("org.h\u00e9bernate", moduleName(reader.read(createArchive("a.war", "WEB-INF/jboss-subdeployment.xml", 2))));
+        assertEquals("org.h\u00e9bernate", moduleName(reader.read(createArchive("b.jar", "META-INF/jboss-subdeployment.xml", 2))));
+        assertEquals("org.h\u00e9bernate", moduleName(reader.read(createArchive("c.jar", "nested/meta-inf/jboss-subdeployment.xml", 2))));
+        assertNull(reader.read(createArchive("d.jar", null, 2)));
+
+        File exploded = new File(dir, "exploded");
+        FileUtils.writeByteArrayToFile(new File(exploded, "WEB-INF/jboss-subdeployment.xml"), DESCRIPTOR.getBytes("UTF-8"));
+        assertEquals("org.h\u00e9bernate", moduleName(reader.read(exploded)));
+        File empty = new File(dir, "empty");
+        empty.mkdirs();
+        assertNull(reader.read(empty));
+    }
+
+    public void testCache() throws Exception {
+        SubDeploymentReader reader = new SubDeploymentReader(log, "UTF-8", false);
+        File cacheFile = new File(dir, "subdeployments.idx");
+        File archive = createArchive("a.war", "WEB-INF/jboss-subdeployment.xml", 2);
+        SubDeploymentCache cache = SubDeploymentCache.load(cacheFile);
+        List<ModuleDependency> modules = cache.getModules(archive, reader);
+        assertEquals("[org.h\u00e9bernate:main]", modules.toString());
+        assertEquals(0, cache.getHits());
+        assertTrue(cache.isModified());
+        cache.save(cacheFile);
+
+        // unchanged size and time: the archive is not opened
+        long lastModified = archive.lastModified();
+        byte[] garbage = new byte[(int) archive.length()];
+        FileUtils.writeByteArrayToFile(archive, garbage);
+        archive.setLastModified(lastModified);
+        cache = SubDeploymentCache.load(cacheFile);
+        assertEquals(modules.toString(), cache.getModules(archive, reader).toString());
+        assertEquals(1, cache.getHits());
+        assertFalse(cache.isModified());
+
+        // another archive with the same descriptor
+        archive = createArchive("a.war", "WEB-INF/jboss-subdeployment.xml", 3);
+        assertEquals(modules.toString(), cache.getModules(archive, reader).toString());
+        assertEquals(2, cache.getHits());
+
+        // a changed descriptor
+        archive.delete();
+        ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(archive));
+        zos.putNextEntry(new ZipEntry("WEB-INF/jboss-subdeployment.xml"));
+        zos.write(("<jboss-deployment-structure xmlns=\"urn:jboss:deployment-structure:1.2\"><deployment><dependencies>"
+                + "<module name=\"org.a\" slot=\"1.0\" export=\"true\"/><module name=\"org.b\" optional=\"true\"/>"
+                + "</dependencies></deployment></jboss-deployment-structure>").getBytes("UTF-8"));
+        zos.close();
+        modules = cache.getModules(archive, reader);
+        assertEquals("[org.a:1.0, org.b:main]", modules.toString());
+        assertEquals(2, cache.getHits());
+        cache.save(cacheFile);
+        modules = SubDeploymentCache.load(cacheFile).getModules(archive, reader);
+        assertTrue(modules.get(0).isExport());
+        assertFalse(modules.get(0).isOptional());
+        assertTrue(modules.get(1).isOptional());
+
+        // archives without descriptor are remembered
+        archive = createArchive("a.war", null, 1);
+        assertNull(cache.getModules(archive, reader));
+        cache.save(cacheFile);
+        cache = SubDeploymentCache.load(cacheFile);
+        assertNull(cache.getModules(archive, reader));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getLookups());
+    }
+
+    public void testCentralDirectoryMatchesScan() throws Exception {
+        SubDeploymentReader reader = new SubDeploymentReader(log, "UTF-8", false);
+        String[] locations = { "WEB-INF/jboss-subdeployment.xml", "META-INF/jboss-subdeployment.xml", "nested/meta-inf/jboss-subdeployment.xml" };
+        for (int i = 0; i < locations.length; i++) {
+            File file = createArchive("archive" + i + ".war", locations[i], 8);
+            assertEquals(locations[i], moduleName(legacyRead(file, "UTF-8")), moduleName(reader.read(file)));
+        }
+        File file = createArchive("none.war", null, 8);
+        assertNull(legacyRead(file, "UTF-8"));
+        assertNull(reader.read(file));
+    }
+}